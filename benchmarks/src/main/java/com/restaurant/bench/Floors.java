@@ -0,0 +1,45 @@
+package com.restaurant.bench;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.Manager;
+import com.restaurant.Table;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Shared fixtures of the benchmarks.
+ */
+final class Floors {
+
+    /**
+     * Groups of this size never fit {@link #smallTables(int)}, so they stay in the queue.
+     */
+    static final int OVERSIZED_GROUP = 6;
+
+    /**
+     * Arrival nanos double as a unique id: equal groups would be indistinguishable for the manager.
+     */
+    private static final AtomicLong ARRIVALS = new AtomicLong();
+
+    private Floors() {
+    }
+
+    /**
+     * Tables of 2, 3 and 4 seats in turn.
+     */
+    static List<Table> smallTables(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new Table(2 + i % 3)).toList();
+    }
+
+    static ClientsGroup group(int size) {
+        return new ClientsGroup(size, ARRIVALS.getAndIncrement());
+    }
+
+    static void awaitSeat(Manager manager, ClientsGroup group) {
+        while (manager.lookup(group) == null) {
+            Thread.onSpinWait();
+        }
+    }
+}
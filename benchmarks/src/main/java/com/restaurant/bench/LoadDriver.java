@@ -0,0 +1,327 @@
+package com.restaurant.bench;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.RestManager;
+import com.restaurant.RestSettings;
+import com.restaurant.Table;
+import com.restaurant.metrics.Counter;
+import com.restaurant.metrics.LatencyHistogram;
+import com.restaurant.metrics.MetricsSnapshot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test of a {@link RestManager}: front desks arrive groups on a fixed schedule, whatever the restaurant's latency,
+ * let them leave after their dwell time, and look them up meanwhile. Run over a sweep of desk threads and table counts.
+ *
+ * <p>Every latency is measured from the time the operation was scheduled for, not from the time it could start,
+ * so a stall is charged to every operation it has held up (no coordinated omission).
+ * The arrival of a group is its scheduled time, so its time to seat is corrected the same way.
+ * <p>Alongside: seat retries per seated group, which measure the CAS contention, and the CPU time of the dispatcher.
+ * <p>The report is a CSV with one row per sweep point and the settings as comments on top, so two releases can be diffed.
+ * <p>Usage: {@code java -cp benchmarks.jar com.restaurant.bench.LoadDriver [--mode=LOCK_FREE|PACKED|BLOCKING] [--wait=PARK]
+ * [--threads=1,2,4,8,16,32] [--tables=16,256] [--load=0.8 | --rate=<arrivals per second>] [--dwell-ms=20] [--max-wait-ms=2000]
+ * [--warmup-s=2] [--duration-s=5] [--lookups=1] [--seed=1] [--out=load-report.csv]}
+ * <p>{@code --load} sets the rate which would keep that share of the seats busy; groups are of 1 to 4, 2.5 on average.
+ */
+public final class LoadDriver {
+
+    private static final int MAX_GROUP = 4;
+    private static final double MEAN_GROUP = (1 + MAX_GROUP) / 2.0;
+    /**
+     * Waits shorter than this are spun, parking is too coarse for them.
+     */
+    private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    /**
+     * Groups of its own a desk looks up, the latest ones.
+     */
+    private static final int RECENT = 64;
+
+    private ManagerMode mode = ManagerMode.LOCK_FREE;
+    private WaitStrategy wait = WaitStrategy.PARK;
+    private List<Integer> threads = List.of(1, 2, 4, 8, 16, 32);
+    private List<Integer> tables = List.of(16, 256);
+    private double load = 0.8;
+    private double rate;
+    private Duration dwell = Duration.ofMillis(20);
+    private Duration maxWait = Duration.ofSeconds(2);
+    private Duration warmup = Duration.ofSeconds(2);
+    private Duration duration = Duration.ofSeconds(5);
+    private int lookups = 1;
+    private long seed = 1;
+    private Path out = Path.of("load-report.csv");
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var driver = new LoadDriver();
+        for (var arg : args) {
+            var value = arg.substring(arg.indexOf('=') + 1);
+            switch (arg.substring(0, Math.max(0, arg.indexOf('=')))) {
+                case "--mode" -> driver.mode = ManagerMode.valueOf(value);
+                case "--wait" -> driver.wait = WaitStrategy.valueOf(value);
+                case "--threads" -> driver.threads = parseInts(value);
+                case "--tables" -> driver.tables = parseInts(value);
+                case "--load" -> driver.load = Double.parseDouble(value);
+                case "--rate" -> driver.rate = Double.parseDouble(value);
+                case "--dwell-ms" -> driver.dwell = Duration.ofMillis(Long.parseLong(value));
+                case "--max-wait-ms" -> driver.maxWait = Duration.ofMillis(Long.parseLong(value));
+                case "--warmup-s" -> driver.warmup = Duration.ofSeconds(Long.parseLong(value));
+                case "--duration-s" -> driver.duration = Duration.ofSeconds(Long.parseLong(value));
+                case "--lookups" -> driver.lookups = Integer.parseInt(value);
+                case "--seed" -> driver.seed = Long.parseLong(value);
+                case "--out" -> driver.out = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        driver.sweep();
+    }
+
+    private static List<Integer> parseInts(String values) {
+        return Arrays.stream(values.split(",")).map(String::strip).map(Integer::valueOf).toList();
+    }
+
+    private void sweep() throws IOException, InterruptedException {
+        var lines = new ArrayList<String>();
+        lines.add(String.format(Locale.ROOT, "# mode=%s wait=%s load=%s rate=%s dwell=%s maxWait=%s warmup=%s duration=%s lookups=%d seed=%d",
+                this.mode, this.wait, this.load, this.rate, this.dwell, this.maxWait, this.warmup, this.duration, this.lookups, this.seed));
+        lines.add("# java=" + System.getProperty("java.version") + " cpus=" + Runtime.getRuntime().availableProcessors());
+        lines.add(LoadResult.csvHeader());
+        for (int tableCount : this.tables) {
+            for (int threadCount : this.threads) {
+                var result = new Run(tableCount, threadCount).run();
+                System.out.println(result);
+                lines.add(result.toCsv());
+            }
+        }
+        Files.write(this.out, lines);
+        System.out.println("Report written to " + this.out.toAbsolutePath());
+    }
+
+    /**
+     * One sweep point, on a restaurant of its own.
+     */
+    private final class Run {
+        private final int threads;
+        private final List<Table> tables;
+        private final double rate;
+        /**
+         * Between two arrivals of the schedule; arrival {@code j} is made by desk {@code j % threads}.
+         */
+        private final long period;
+        private final long dwellNanos;
+        private final RestManager manager;
+        private final Desk[] desks;
+        private final List<Thread> dispatchers = new CopyOnWriteArrayList<>();
+        private final LatencyHistogram arrive = new LatencyHistogram();
+        private final LatencyHistogram leave = new LatencyHistogram();
+        private final LatencyHistogram lookup = new LatencyHistogram();
+        private final LatencyHistogram seat = new LatencyHistogram();
+        private final LongAdder arrivals = new LongAdder();
+        private final LongAdder seated = new LongAdder();
+        private final LongAdder expired = new LongAdder();
+        private long start;
+        private long measureStart;
+        private long end;
+
+        Run(int tableCount, int threads) {
+            var driver = LoadDriver.this;
+            this.threads = threads;
+            this.tables = Floors.smallTables(tableCount);
+            int seats = this.tables.stream().mapToInt(Table::size).sum();
+            this.rate = driver.rate > 0 ? driver.rate : driver.load * seats / (MEAN_GROUP * driver.dwell.toNanos() / 1e9);
+            this.period = Math.max(1, Math.round(1e9 / this.rate));
+            this.dwellNanos = driver.dwell.toNanos();
+            var settings = RestSettings.defaults()
+                    .withMetrics(true)
+                    .withMaxWait(driver.maxWait, this::onExpired)
+                    .withOnSeat(this::onSeat)
+                    .withDispatchers(r -> {
+                        var thread = new Thread(r, "load-dispatcher");
+                        thread.setDaemon(true);
+                        this.dispatchers.add(thread);
+                        return thread;
+                    });
+            this.manager = driver.mode.create(this.tables, driver.wait.create(), settings);
+            this.desks = new Desk[threads];
+            for (int k = 0; k < threads; k++) {
+                this.desks[k] = new Desk(k, new SplittableRandom(driver.seed + k));
+            }
+        }
+
+        LoadResult run() throws InterruptedException {
+            this.start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50);
+            this.measureStart = this.start + LoadDriver.this.warmup.toNanos();
+            this.end = this.measureStart + LoadDriver.this.duration.toNanos();
+            var threads = new ArrayList<Thread>();
+            for (var desk : this.desks) {
+                var thread = new Thread(desk, "load-desk-" + desk.index);
+                desk.thread = thread;
+                threads.add(thread);
+                thread.start();
+            }
+            sleepUntil(this.measureStart);
+            MetricsSnapshot before = this.manager.metrics();
+            long cpuBefore = this.dispatcherCpu();
+            sleepUntil(this.end);
+            MetricsSnapshot after = this.manager.metrics();
+            long cpuAfter = this.dispatcherCpu();
+            for (var thread : threads) {
+                thread.join();
+            }
+            this.manager.close();
+            double seconds = (this.end - this.measureStart) / 1e9;
+            long seated = this.seated.sum();
+            return new LoadResult(this.tables.size(), this.threads, this.rate, this.arrivals.sum() / seconds,
+                    this.arrivals.sum(), seated, this.expired.sum(),
+                    LoadResult.Percentiles.of(this.arrive.snapshot()), LoadResult.Percentiles.of(this.leave.snapshot()),
+                    LoadResult.Percentiles.of(this.lookup.snapshot()), LoadResult.Percentiles.of(this.seat.snapshot()),
+                    seated == 0 ? 0 : (double) (after.count(Counter.SEAT_RETRIES) - before.count(Counter.SEAT_RETRIES)) / seated,
+                    after.count(Counter.DISPATCH_PASSES) - before.count(Counter.DISPATCH_PASSES),
+                    after.count(Counter.DISPATCH_IDLE) - before.count(Counter.DISPATCH_IDLE),
+                    (cpuAfter - cpuBefore) / (seconds * 1e9));
+        }
+
+        private long dispatcherCpu() {
+            var threadBean = ManagementFactory.getThreadMXBean();
+            return this.dispatchers.stream().mapToLong(thread -> Math.max(0, threadBean.getThreadCpuTime(thread.getId()))).sum();
+        }
+
+        private boolean measured(long scheduled) {
+            return scheduled >= this.measureStart && scheduled < this.end;
+        }
+
+        /**
+         * Called on the thread which seats the group, it is handed back to its desk to leave.
+         */
+        private void onSeat(ClientsGroup group) {
+            long now = System.nanoTime();
+            if (this.measured(group.arrivalNanos())) {
+                this.seat.record(now - group.arrivalNanos());
+                this.seated.increment();
+            }
+            var desk = this.desks[(int) ((group.arrivalNanos() - this.start) / this.period % this.threads)];
+            long leaveAt = now + this.dwellNanos;
+            desk.seated.add(new Seated(group, leaveAt));
+            if (leaveAt < desk.wakeAt) {
+                LockSupport.unpark(desk.thread);
+            }
+        }
+
+        private void onExpired(ClientsGroup group) {
+            if (this.measured(group.arrivalNanos())) {
+                this.expired.increment();
+            }
+        }
+
+        private final class Desk implements Runnable {
+            private final int index;
+            private final SplittableRandom random;
+            /**
+             * Handed over by whoever seats the groups of this desk.
+             */
+            private final ConcurrentLinkedQueue<Seated> seated = new ConcurrentLinkedQueue<>();
+            private final PriorityQueue<Seated> leaving = new PriorityQueue<>(Comparator.comparingLong(Seated::leaveAt));
+            private final ClientsGroup[] recent = new ClientsGroup[RECENT];
+            private volatile long wakeAt;
+            private Thread thread;
+
+            Desk(int index, SplittableRandom random) {
+                this.index = index;
+                this.random = random;
+            }
+
+            @Override
+            public void run() {
+                var run = Run.this;
+                var manager = run.manager;
+                long made = 0;
+                for (long j = this.index; ; j += run.threads) {
+                    long scheduled = run.start + j * run.period;
+                    if (scheduled >= run.end) {
+                        break;
+                    }
+                    this.leaveUntil(scheduled);
+                    var group = new ClientsGroup(1 + this.random.nextInt(MAX_GROUP), scheduled);
+                    manager.onArrive(group);
+                    long now = System.nanoTime();
+                    boolean measured = run.measured(scheduled);
+                    if (measured) {
+                        run.arrive.record(now - scheduled);
+                        run.arrivals.increment();
+                    }
+                    this.recent[(int) (made++ % RECENT)] = group;
+                    for (int i = 0; i < LoadDriver.this.lookups; i++) {
+                        var looked = this.recent[this.random.nextInt((int) Math.min(made, RECENT))];
+                        long lookupStart = System.nanoTime();
+                        manager.lookup(looked);
+                        if (measured) {
+                            run.lookup.record(System.nanoTime() - lookupStart);
+                        }
+                    }
+                }
+                this.leaveUntil(run.end + run.dwellNanos); // so the seats of the last groups are measured free too
+            }
+
+            /**
+             * Lets the groups due leave until the deadline, parking in between.
+             */
+            private void leaveUntil(long deadline) {
+                var run = Run.this;
+                while (true) {
+                    Seated next;
+                    while ((next = this.seated.poll()) != null) {
+                        this.leaving.add(next);
+                    }
+                    long now = System.nanoTime();
+                    next = this.leaving.peek();
+                    if (next != null && next.leaveAt() <= now) {
+                        this.leaving.poll();
+                        run.manager.onLeave(next.group());
+                        if (run.measured(next.leaveAt())) {
+                            run.leave.record(System.nanoTime() - next.leaveAt());
+                        }
+                        continue;
+                    }
+                    if (now >= deadline) {
+                        return;
+                    }
+                    long wake = next == null ? deadline : Math.min(deadline, next.leaveAt());
+                    this.wakeAt = wake;
+                    if (!this.seated.isEmpty()) {
+                        continue; // handed over meanwhile, it may be due before the wake-up
+                    }
+                    if (wake - now > SPIN_NANOS) {
+                        LockSupport.parkNanos(wake - now - SPIN_NANOS);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                }
+            }
+        }
+    }
+
+    private record Seated(ClientsGroup group, long leaveAt) {
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long left;
+        while ((left = nanos - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(left);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.restaurant.bench;
+
+import com.restaurant.metrics.HistogramSnapshot;
+
+import java.util.Locale;
+
+/**
+ * One point of a load sweep, latencies in microseconds; a row of the report of {@link LoadDriver}.
+ *
+ * @param offeredRate      arrivals per second on the schedule
+ * @param achievedRate     arrivals per second actually made during the measurement
+ * @param arrive           latency of {@code onArrive}, from its scheduled time
+ * @param leave            latency of {@code onLeave}, from the end of the dwell time
+ * @param lookup           latency of {@code lookup}, made right after an arrival, so from its start
+ * @param seat             time from the scheduled arrival to the seat, of all the seated groups
+ * @param expired          groups abandoned after the max wait
+ * @param seatRetries      failed seat swaps and stale index hints per seated group, i.e. CAS contention
+ * @param dispatchPasses   passes of the dispatcher
+ * @param dispatchIdle     passes which have seated nobody
+ * @param dispatcherCpu    CPU time of the dispatcher thread over the measurement time
+ */
+record LoadResult(int tables, int threads, double offeredRate, double achievedRate, long arrivals, long seated, long expired,
+                  Percentiles arrive, Percentiles leave, Percentiles lookup, Percentiles seat,
+                  double seatRetries, long dispatchPasses, long dispatchIdle, double dispatcherCpu) {
+
+    static String csvHeader() {
+        return "tables,threads,offered_rate,achieved_rate,arrivals,seated,expired,"
+                + Percentiles.csvHeader("arrive") + "," + Percentiles.csvHeader("leave") + ","
+                + Percentiles.csvHeader("lookup") + "," + Percentiles.csvHeader("seat") + ","
+                + "seat_retries_per_seat,dispatch_passes,dispatch_idle,dispatcher_cpu";
+    }
+
+    String toCsv() {
+        return String.format(Locale.ROOT, "%d,%d,%.1f,%.1f,%d,%d,%d,%s,%s,%s,%s,%.4f,%d,%d,%.4f",
+                this.tables, this.threads, this.offeredRate, this.achievedRate, this.arrivals, this.seated, this.expired,
+                this.arrive.toCsv(), this.leave.toCsv(), this.lookup.toCsv(), this.seat.toCsv(),
+                this.seatRetries, this.dispatchPasses, this.dispatchIdle, this.dispatcherCpu);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "tables=%d threads=%d rate=%.0f/%.0f seated=%d expired=%d arrive[%s] leave[%s] lookup[%s] seat[%s]"
+                        + " retries/seat=%.3f passes=%d idle=%d dispatcherCpu=%.1f%%",
+                this.tables, this.threads, this.achievedRate, this.offeredRate, this.seated, this.expired,
+                this.arrive, this.leave, this.lookup, this.seat, this.seatRetries, this.dispatchPasses, this.dispatchIdle, 100 * this.dispatcherCpu);
+    }
+
+    /**
+     * In microseconds.
+     */
+    record Percentiles(double p50, double p90, double p99, double p999, double max) {
+
+        static Percentiles of(HistogramSnapshot histogram) {
+            return new Percentiles(micros(histogram.p50()), micros(histogram.p90()), micros(histogram.p99()),
+                    micros(histogram.p999()), micros(histogram.max()));
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1_000.0;
+        }
+
+        static String csvHeader(String name) {
+            return String.join(",", name + "_p50_us", name + "_p90_us", name + "_p99_us", name + "_p999_us", name + "_max_us");
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%.1f,%.1f,%.1f,%.1f,%.1f", this.p50, this.p90, this.p99, this.p999, this.max);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "p50=%.1f p99=%.1f p99.9=%.1f max=%.1f us", this.p50, this.p99, this.p999, this.max);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.restaurant.bench;
+
+import com.restaurant.Manager;
+import com.restaurant.RestManager;
+import com.restaurant.RestSettings;
+import com.restaurant.ShardedRestManager;
+import com.restaurant.Table;
+import com.restaurant.wait.ActionOnWait;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Engines of {@link RestManager} under benchmark.
+ */
+public enum ManagerMode {
+
+    LOCK_FREE(true, false),
+    PACKED(true, true),
+    BLOCKING(false, false);
+
+    private final boolean lockFree;
+    private final boolean packedSeats;
+
+    ManagerMode(boolean lockFree, boolean packedSeats) {
+        this.lockFree = lockFree;
+        this.packedSeats = packedSeats;
+    }
+
+    public RestManager create(List<Table> tables, ActionOnWait actionOnWait, boolean metrics) {
+        return this.create(tables, actionOnWait, RestSettings.defaults().withMetrics(metrics));
+    }
+
+    /**
+     * @param settings everything but the seat layout, which is the one of the mode
+     */
+    public RestManager create(List<Table> tables, ActionOnWait actionOnWait, RestSettings settings) {
+        return new RestManager(tables, this.lockFree, actionOnWait, settings.withPackedSeats(this.packedSeats));
+    }
+
+    /**
+     * @return a single {@link RestManager} for one shard, so the sharding overhead itself is measured from two shards on
+     */
+    public Manager create(List<Table> tables, int shards, Supplier<ActionOnWait> actionOnWait, boolean metrics) {
+        if (shards == 1) {
+            return this.create(tables, actionOnWait.get(), metrics);
+        }
+        return new ShardedRestManager(tables, shards, this.lockFree, actionOnWait, this.settings(metrics));
+    }
+
+    private RestSettings settings(boolean metrics) {
+        return RestSettings.defaults().withPackedSeats(this.packedSeats).withMetrics(metrics);
+    }
+}
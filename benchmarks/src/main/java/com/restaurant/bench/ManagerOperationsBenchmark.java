@@ -0,0 +1,161 @@
+package com.restaurant.bench;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.RestManager;
+import com.restaurant.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the single operations of {@link RestManager} on a floor where every table is partially occupied
+ * and {@code queueDepth} oversized groups are waiting.
+ * <p>Run it with {@code -t} to set the number of front-desk threads calling the operations concurrently,
+ * e.g. {@code mvn package && java -jar benchmarks/target/benchmarks.jar ManagerOperations -t 4 -p wait=PARK}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManagerOperationsBenchmark {
+
+    private static final Duration NOBODY_WAITED_THAT_LONG = Duration.ofDays(1);
+    private static final int BURST = 16;
+
+    @Param({"LOCK_FREE", "PACKED", "BLOCKING"})
+    public ManagerMode mode;
+
+    @Param({"NONE", "SPIN", "YIELD", "PARK", "BACKOFF"})
+    public WaitStrategy wait;
+
+    @Param({"16", "256"})
+    public int tables;
+
+    @Param({"0", "1024"})
+    public int queueDepth;
+
+    /**
+     * Overhead of the counters and histograms on the measured paths.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private RestManager manager;
+    private ClientsGroup[] seated;
+
+    @Setup
+    public void setUp() {
+        var floor = Floors.smallTables(this.tables);
+        this.manager = this.mode.create(floor, this.wait.create(), this.metrics);
+        this.seated = new ClientsGroup[this.tables];
+        for (int i = 0; i < this.tables; i++) {
+            this.seated[i] = Floors.group(1); // one per table, the free seats are filled smallest table first
+            this.manager.onArrive(this.seated[i]);
+            Floors.awaitSeat(this.manager, this.seated[i]);
+        }
+        for (int i = 0; i < this.queueDepth; i++) {
+            this.manager.onArrive(Floors.group(Floors.OVERSIZED_GROUP));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.manager.close();
+    }
+
+    @Benchmark
+    public Table lookup() {
+        return this.manager.lookup(this.seated[ThreadLocalRandom.current().nextInt(this.seated.length)]);
+    }
+
+    /**
+     * A small group is seated right away on arrival and leaves again.
+     */
+    @Benchmark
+    public void arriveAndLeave() {
+        var group = Floors.group(1);
+        this.manager.onArrive(group);
+        if (this.manager.lookup(group) == null && !this.manager.abandonQueue(group)) {
+            Floors.awaitSeat(this.manager, group); // seated by the dispatcher in the meantime
+        }
+        if (this.manager.lookup(group) != null) {
+            this.manager.onLeave(group);
+        }
+    }
+
+    /**
+     * A burst of small groups arrives and leaves one call at a time, the baseline of {@link #burstBatched()}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burstOneByOne() {
+        var groups = burst();
+        groups.forEach(this.manager::onArrive);
+        this.settle(groups);
+        groups.forEach(this.manager::onLeave);
+    }
+
+    /**
+     * The same burst through the group-commit entry points.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burstBatched() {
+        var groups = burst();
+        this.manager.onArriveAll(groups);
+        this.settle(groups);
+        this.manager.onLeaveAll(groups);
+    }
+
+    private static List<ClientsGroup> burst() {
+        var groups = new ArrayList<ClientsGroup>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            groups.add(Floors.group(1));
+        }
+        return groups;
+    }
+
+    /**
+     * Other benchmark threads may hold the free seats, a group which had to queue is abandoned or awaited.
+     */
+    private void settle(List<ClientsGroup> groups) {
+        groups.removeIf(group -> this.manager.lookup(group) == null && this.manager.abandonQueue(group));
+        groups.forEach(group -> Floors.awaitSeat(this.manager, group));
+    }
+
+    /**
+     * An oversized group joins the end of the queue and abandons it.
+     */
+    @Benchmark
+    public boolean queueAndAbandon() {
+        var group = Floors.group(Floors.OVERSIZED_GROUP);
+        this.manager.onArrive(group);
+        return this.manager.abandonQueue(group);
+    }
+
+    /**
+     * A full pass over the queue which abandons nobody.
+     */
+    @Benchmark
+    public boolean abandonAllIf() {
+        return this.manager.abandonAllIf(NOBODY_WAITED_THAT_LONG);
+    }
+}
@@ -0,0 +1,129 @@
+package com.restaurant.bench;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.Manager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end seating throughput: {@code threads} front desks keep arriving groups of 1 to 4,
+ * and each desk lets its longest seated group leave once it has more than its share of twice the table count in the restaurant.
+ * <p>So about half of the groups have to wait, and they are seated by the dispatcher, not on arrival.
+ * <p>With several shards the dispatchers work in parallel and steal each other's waiting groups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatThroughputBenchmark {
+
+    private static final int GROUPS = 10_000;
+
+    @Param({"LOCK_FREE", "PACKED", "BLOCKING"})
+    public ManagerMode mode;
+
+    @Param({"NONE", "SPIN", "YIELD", "PARK", "BACKOFF"})
+    public WaitStrategy wait;
+
+    @Param({"16", "256"})
+    public int tables;
+
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    /**
+     * Overhead of the counters and histograms on the measured paths.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    /**
+     * Dining rooms, each with its own dispatcher, the tables are dealt out evenly.
+     */
+    @Param({"1", "4"})
+    public int shards;
+
+    private Manager manager;
+    private ExecutorService frontDesks;
+
+    @Setup
+    public void setUp() {
+        this.manager = this.mode.create(Floors.smallTables(this.tables), this.shards, this.wait::create, this.metrics);
+        this.frontDesks = Executors.newFixedThreadPool(this.threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.frontDesks.shutdownNow();
+        this.manager.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUPS)
+    public void seatAndLeave() throws InterruptedException, ExecutionException {
+        int inRestaurant = Math.max(1, 2 * this.tables / this.threads);
+        var desks = new ArrayList<Future<?>>(this.threads);
+        for (int t = 0; t < this.threads; t++) {
+            desks.add(this.frontDesks.submit(() -> this.frontDesk(GROUPS / this.threads, inRestaurant)));
+        }
+        for (var desk : desks) {
+            desk.get();
+        }
+    }
+
+    private void frontDesk(int groups, int inRestaurant) {
+        var random = ThreadLocalRandom.current();
+        var arrived = new ArrayDeque<ClientsGroup>(inRestaurant + 1);
+        for (int i = 0; i < groups; i++) {
+            var group = Floors.group(1 + random.nextInt(4));
+            this.manager.onArrive(group);
+            arrived.add(group);
+            if (arrived.size() > inRestaurant) {
+                this.leaveFirstSeated(arrived);
+            }
+        }
+        while (!arrived.isEmpty()) {
+            this.leaveFirstSeated(arrived);
+        }
+    }
+
+    /**
+     * Waiting for the oldest group only could deadlock: the younger groups of the same desk may hold the tables it needs.
+     */
+    private void leaveFirstSeated(ArrayDeque<ClientsGroup> arrived) {
+        while (true) {
+            for (var it = arrived.iterator(); it.hasNext(); ) {
+                var group = it.next();
+                if (this.manager.lookup(group) != null) {
+                    it.remove();
+                    this.manager.onLeave(group);
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.restaurant.bench;
+
+import com.restaurant.wait.ActionOnWait;
+import com.restaurant.wait.BackoffOnWait;
+import com.restaurant.wait.NoneOnWait;
+import com.restaurant.wait.ParkOnWait;
+import com.restaurant.wait.SpinOnWait;
+import com.restaurant.wait.YieldOnWait;
+
+import java.util.function.Supplier;
+
+/**
+ * Every {@link ActionOnWait} of the project, a fresh instance per manager since the event-driven ones keep state.
+ */
+public enum WaitStrategy {
+
+    NONE(NoneOnWait::new),
+    SPIN(SpinOnWait::new),
+    YIELD(YieldOnWait::new),
+    PARK(ParkOnWait::new),
+    BACKOFF(BackoffOnWait::new);
+
+    private final Supplier<ActionOnWait> factory;
+
+    WaitStrategy(Supplier<ActionOnWait> factory) {
+        this.factory = factory;
+    }
+
+    public ActionOnWait create() {
+        return this.factory.get();
+    }
+}
@@ -0,0 +1,1041 @@
+import com.restaurant.ClientsGroup;
+import com.restaurant.RestManager;
+import com.restaurant.RestSettings;
+import com.restaurant.SharedRestManager;
+import com.restaurant.ShardedRestManager;
+import com.restaurant.Table;
+import com.restaurant.clock.RestClock;
+import com.restaurant.clock.VirtualClock;
+import com.restaurant.exception.AbandonedException;
+import com.restaurant.metrics.Counter;
+import com.restaurant.metrics.HistogramSnapshot;
+import com.restaurant.metrics.MetricsSnapshot;
+import com.restaurant.metrics.RestMetrics;
+import com.restaurant.net.RestClient;
+import com.restaurant.net.RestServer;
+import com.restaurant.policy.WindowBestFitSeating;
+import com.restaurant.sim.Simulation;
+import com.restaurant.sim.SimulationReport;
+import com.restaurant.sim.SyntheticWorkload;
+import com.restaurant.sim.TraceWorkload;
+import com.restaurant.wait.BackoffOnWait;
+import com.restaurant.wait.ParkOnWait;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Behavioral checks of the subsystems, in the assertion style of {@link Main}: run it with -ea.
+ * <p>Restaurants run on a virtual clock wherever possible, so the checks do not wait for the timeouts they check.
+ */
+public class Checks {
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--shared-child")) {
+            sharedChild(Path.of(args[1]));
+            return;
+        }
+        for (var engine : Engine.values()) {
+            script(engine);
+            arrivals(engine);
+            waitingLine(engine);
+            expiry(engine);
+            metrics(engine);
+            sharded(engine);
+            lifecycle(engine);
+            futures(engine);
+            batches(engine);
+            journal(engine);
+            occupancy(engine);
+            resize(engine);
+            waitEstimates(engine);
+            reservations(engine);
+        }
+        waitStrategies();
+        simulation();
+        sharedFile();
+        clientServer();
+        System.out.println("All checks passed!");
+
+        // to check if the assertion is enabled (-ea VM option)
+        assert 0 == 1 : "Assertions are enabled!";
+    }
+
+    /**
+     * Groups are records, so each one arrives a nanosecond after the previous one to be a group of its own.
+     */
+    private static ClientsGroup group(VirtualClock clock, int size) {
+        clock.advance(Duration.ofNanos(1));
+        return new ClientsGroup(size, clock.nanos());
+    }
+
+    /**
+     * Waits for the dispatcher thread to bring the restaurant to the expected state.
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assert System.nanoTime() < deadline : "Timed out";
+            Thread.sleep(1);
+        }
+    }
+
+    enum Engine {
+        LOCK_FREE, PACKED, BLOCKING;
+
+        RestManager create(List<Table> tables, RestSettings settings) {
+            return new RestManager(tables, this != BLOCKING, new ParkOnWait(), settings.withPackedSeats(this == PACKED));
+        }
+
+        ShardedRestManager sharded(List<List<Table>> rooms, RestSettings settings) {
+            return new ShardedRestManager(rooms, this != BLOCKING, ParkOnWait::new, settings.withPackedSeats(this == PACKED));
+        }
+    }
+
+    /**
+     * The tests of {@link Main}, on every engine; they run with the dispatcher thread, like a restaurant in service.
+     */
+    private static void script(Engine engine) throws InterruptedException {
+        var clock = new VirtualClock(ORIGIN);
+        Main.script(engine.create(List.of(new Table(2), new Table(4)), RestSettings.defaults().withClock(clock)), clock);
+        System.out.println("Script of Main passed on " + engine);
+    }
+
+    /**
+     * Groups are told apart by value, so a group equal to one seated or waiting is refused, in a shard as well as in the others.
+     */
+    private static void arrivals(Engine engine) {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true);
+        var seated = ClientsGroup.ofCurrentTime(2, clock);
+        var waiting = ClientsGroup.ofCurrentTime(1, clock); // same tick, equal to no other group as its size differs
+        var rm = engine.create(List.of(new Table(2)), settings);
+        rm.onArrive(seated);
+        rm.onArrive(waiting);
+        for (var again : List.of(new ClientsGroup(2, seated.arrivalNanos()), new ClientsGroup(1, waiting.arrivalNanos()))) {
+            try {
+                rm.onArrive(again);
+                assert false : "arrived twice";
+            } catch (IllegalStateException expected) {
+                // equal to a group still there
+            }
+            try {
+                rm.onArriveAll(List.of(again));
+                assert false : "arrived twice in a burst";
+            } catch (IllegalStateException expected) {
+                // the same through the group commit
+            }
+        }
+        assert rm.getQueueCount() == 1 && rm.lookup(seated).size() == 2;
+        rm.onLeave(seated);
+        rm.onArrive(seated); // once it has left, the group may come back
+        assert rm.lookup(seated) == null && rm.getQueueCount() == 2;
+
+        var sharded = engine.sharded(List.of(List.of(new Table(2)), List.of(new Table(2))), settings);
+        sharded.onArrive(seated);
+        try {
+            sharded.onArrive(new ClientsGroup(2, seated.arrivalNanos())); // would be routed to the emptier shard
+            assert false : "arrived twice in another shard";
+        } catch (IllegalStateException expected) {
+            // every shard is asked
+        }
+        assert sharded.getQueueCount() == 0 && sharded.getSeatCount() == 2;
+        System.out.println("Arrivals passed on " + engine);
+    }
+
+    /**
+     * The order is checked on a restaurant dispatched by hand, so each step sees exactly the departures before it.
+     */
+    private static void waitingLine(Engine engine) throws InterruptedException {
+        var clock = new VirtualClock(ORIGIN);
+        var rm = engine.create(List.of(new Table(2), new Table(4)), RestSettings.defaults().withClock(clock).withManualDispatch(true));
+        var two = group(clock, 2);
+        var four = group(clock, 4);
+        rm.onArrive(two);
+        rm.onArrive(four);
+        var line = List.of(group(clock, 4), group(clock, 2), group(clock, 3), group(clock, 1));
+        line.forEach(rm::onArrive);
+        assert rm.getQueueCount() == 4;
+
+        // the oldest head which fits goes first, whatever its size: the 4 before the younger 2, 3 and 1
+        rm.onLeave(four);
+        rm.dispatch();
+        assert rm.lookup(line.get(0)).size() == 4 && rm.getQueueCount() == 3;
+        // and the 2 before the 1 behind it, even if both would fit
+        rm.onLeave(two);
+        rm.dispatch();
+        assert rm.lookup(line.get(1)).size() == 2 && rm.lookup(line.get(3)) == null && rm.getQueueCount() == 2;
+
+        // an arrival which fits still queues behind an older group of its size or smaller
+        rm.onLeave(line.get(0));
+        var newcomer = group(clock, 1);
+        rm.onArrive(newcomer);
+        assert rm.lookup(newcomer) == null && rm.getQueueCount() == 3;
+
+        // a group is claimed by whoever takes it out of the line: never both seated and abandoned
+        var seated = ConcurrentHashMap.<ClientsGroup>newKeySet();
+        var abandoned = ConcurrentHashMap.<ClientsGroup>newKeySet();
+        var crowded = engine.create(Collections.nCopies(8, new Table(4)), RestSettings.defaults().withClock(clock));
+        var groups = new ArrayList<ClientsGroup>();
+        for (int i = 0; i < 2_000; i++) {
+            groups.add(group(clock, 1 + i % 4));
+        }
+        groups.forEach(crowded::onArrive);
+        var leaving = new Thread(() -> {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (seated.size() + abandoned.size() < groups.size() && System.nanoTime() < deadline) {
+                for (var group : groups) {
+                    if (!seated.contains(group) && crowded.lookup(group) != null) {
+                        seated.add(group);
+                        crowded.onLeave(group);
+                    }
+                }
+            }
+        });
+        leaving.start();
+        for (int i = groups.size() - 1; i >= 0; i -= 2) { // from the back, so both sides have work
+            if (crowded.abandonQueue(groups.get(i))) {
+                abandoned.add(groups.get(i));
+            }
+        }
+        leaving.join();
+        assert crowded.getQueueCount() == 0 && crowded.getSeatCount() == 0;
+        assert seated.size() + abandoned.size() == groups.size() : seated.size() + " + " + abandoned.size();
+        assert Collections.disjoint(seated, abandoned);
+        System.out.println("Waiting line passed on " + engine);
+    }
+
+    /**
+     * The expiry scheduler advances the wheel to the time of the restaurant clock, the groups expire once the clock has passed their deadline.
+     */
+    private static void expiry(Engine engine) throws InterruptedException {
+        var clock = new VirtualClock(ORIGIN);
+        var expired = new LinkedBlockingQueue<ClientsGroup>();
+        var settings = RestSettings.defaults().withClock(clock).withMaxWait(Duration.ofSeconds(1), expired::add);
+        var rm = engine.create(List.of(new Table(2)), settings);
+        var seated = group(clock, 2);
+        rm.onArrive(seated);
+        var first = group(clock, 2);
+        var second = group(clock, 1);
+        var third = group(clock, 2);
+        List.of(first, second, third).forEach(rm::onArrive);
+        assert rm.getQueueCount() == 3;
+
+        // the first group gets the table just before its deadline, the others are abandoned once theirs has passed
+        clock.advance(Duration.ofMillis(990));
+        rm.onLeave(seated);
+        await(() -> rm.lookup(first) != null);
+        clock.advance(Duration.ofMillis(20));
+        var abandoned = Set.of(expired.poll(5, TimeUnit.SECONDS), expired.poll(5, TimeUnit.SECONDS));
+        assert abandoned.equals(Set.of(second, third)) && expired.isEmpty();
+        assert rm.lookup(first) != null && rm.getQueueCount() == 0;
+
+        // a callback stuck in one restaurant holds up neither the wheel nor the callbacks of another
+        var release = new CountDownLatch(1);
+        var stuck = engine.create(List.of(new Table(2)), settings.withMaxWait(Duration.ofSeconds(1), group -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        var other = engine.create(List.of(new Table(2)), settings);
+        stuck.onArrive(group(clock, 2));
+        other.onArrive(group(clock, 2));
+        stuck.onArrive(group(clock, 2));
+        var expiring = group(clock, 2);
+        other.onArrive(expiring);
+        clock.advance(Duration.ofSeconds(2));
+        await(() -> stuck.getQueueCount() == 0);
+        assert expiring.equals(expired.poll(5, TimeUnit.SECONDS)) && other.getQueueCount() == 0;
+        release.countDown();
+        stuck.close();
+        other.close();
+        System.out.println("Expiry passed on " + engine);
+    }
+
+    /**
+     * An event-driven strategy serves the one thread waiting on it, a second one is refused instead of missing its wake-ups.
+     */
+    private static void waitStrategies() throws InterruptedException {
+        for (var strategy : List.of(new ParkOnWait(), new BackoffOnWait(0, 0))) {
+            strategy.onSignal();
+            strategy.doOnWait(); // signalled, so it returns at once
+            var refused = new AtomicBoolean();
+            var other = new Thread(() -> {
+                try {
+                    strategy.doOnWait();
+                } catch (IllegalStateException e) {
+                    refused.set(true);
+                }
+            });
+            other.setDaemon(true);
+            other.start();
+            other.join(TimeUnit.SECONDS.toMillis(5));
+            assert refused.get() : strategy.getClass().getSimpleName() + " served a second thread";
+        }
+        System.out.println("Wait strategies passed");
+    }
+
+    /**
+     * Two tables of 2 and 4, the figures of the trace are worked out by hand:
+     * the 3 waits 20s for the 4 to leave, the last 2 gives up after 5s, and 330 of the 420 seat-seconds are taken.
+     */
+    private static void simulation() throws IOException {
+        var trace = Files.createTempFile("restaurant-trace", ".csv");
+        try {
+            Files.writeString(trace, """
+                    # arrival,size,dwell[,patience] in seconds
+                    0,2,60
+                    10,4,30
+                    20,3,30
+                    30,2,10,5
+                    """);
+            var simulation = new Simulation(List.of(new Table(2), new Table(4)));
+            SimulationReport report;
+            try (var workload = new TraceWorkload(trace)) {
+                report = simulation.run(workload);
+            }
+            assert report.arrived() == 4 && report.seated() == 3 && report.abandoned() == 1 && report.stillWaiting() == 0;
+            assert report.maxQueue() == 2 && report.events() == 8 && report.simulatedTime().equals(Duration.ofSeconds(70));
+            assert Math.abs(report.utilization() - 330.0 / 420) < 1e-9 && Math.abs(report.averageQueue() - 25.0 / 70) < 1e-9;
+            assert report.waitP50().isZero() && report.waitMax().equals(Duration.ofSeconds(20));
+
+            // the same workload gives the same run, only the measured event rate differs
+            try (var workload = new TraceWorkload(trace)) {
+                assert figures(simulation.run(workload)).equals(figures(report));
+            }
+            var synthetic = new Simulation(List.of(new Table(2), new Table(2), new Table(4), new Table(6)));
+            var first = synthetic.run(SyntheticWorkload.lunchAndDinner(60, 7));
+            assert first.seated() > 0 && figures(synthetic.run(SyntheticWorkload.lunchAndDinner(60, 7))).equals(figures(first));
+        } finally {
+            Files.delete(trace);
+        }
+        System.out.println("Simulation passed");
+    }
+
+    private static SimulationReport figures(SimulationReport report) {
+        return new SimulationReport(report.seats(), report.arrived(), report.seated(), report.abandoned(), report.stillWaiting(),
+                report.simulatedTime(), report.utilization(), report.averageQueue(), report.maxQueue(),
+                report.waitP50(), report.waitP90(), report.waitP99(), report.waitMax(), report.events(), 0);
+    }
+
+    /**
+     * Counters and the wait histogram after a script dispatched by hand, where every wait is known to the nanosecond.
+     */
+    private static void metrics(Engine engine) throws JMException {
+        var on = metricsScript(engine, true);
+        assert on.enabled();
+        var expected = Map.of(Counter.ARRIVED, 5L, Counter.SEATED_ON_ARRIVAL, 2L, Counter.QUEUED, 3L, Counter.SEATED_FROM_QUEUE, 2L,
+                Counter.LEFT, 2L, Counter.ABANDONED, 1L, Counter.EXPIRED, 0L, Counter.DISPATCH_PASSES, 3L, Counter.DISPATCH_IDLE, 1L);
+        expected.forEach((counter, count) -> {
+            assert on.count(counter) == count : counter + " " + on.count(counter);
+        });
+        // the 2 waited 1s and the 4 3s, give or take the nanoseconds between the arrivals; the median is the top of the bucket of 1s, the rest is capped by the max
+        long shortWait = TimeUnit.SECONDS.toNanos(1) + 2;
+        long longWait = TimeUnit.SECONDS.toNanos(3) + 1;
+        assert on.waitTime().equals(new HistogramSnapshot(2, (shortWait + longWait) / 2.0, 1_006_632_959L, longWait, longWait, longWait, longWait)) : on.waitTime();
+        assert on.queueLength() == 0 && on.seatedSeats() == 6 && on.totalSeats() == 6 && on.utilization() == 1;
+
+        // switched off, only the gauges are filled in
+        var off = metricsScript(engine, false);
+        assert !off.enabled() && off.counters().values().stream().allMatch(count -> count == 0);
+        assert off.waitTime().equals(HistogramSnapshot.EMPTY) && off.dispatchPass().equals(HistogramSnapshot.EMPTY);
+        assert off.queueLength() == 0 && off.seatedSeats() == 6 && off.totalSeats() == 6;
+
+        // a value is reported as the top of its bucket: exact below 16, then 8 buckets per power of two
+        var tops = Map.of(0L, 0L, 7L, 7L, 8L, 8L, 15L, 15L, 16L, 17L, 17L, 17L, 1023L, 1023L, 1024L, 1151L, 1_000_000_000L, 1_006_632_959L);
+        tops.forEach((wait, top) -> {
+            long p50 = waits(engine, wait, TimeUnit.HOURS.toNanos(1)).p50();
+            assert p50 == top : wait + " reported as " + p50;
+        });
+
+        var clock = new VirtualClock(ORIGIN);
+        var rm = engine.create(List.of(new Table(2)), RestSettings.defaults().withClock(clock).withManualDispatch(true).withMetrics(true));
+        rm.onArrive(group(clock, 2));
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var name = rm.registerMBean("checks-" + engine);
+        try {
+            assert server.getAttribute(name, "Arrived").equals(1L) && server.getAttribute(name, "SeatedSeats").equals(2);
+            rm.registerMBean("checks-" + engine);
+            assert false : "registered twice";
+        } catch (IllegalArgumentException e) {
+            assert server.isRegistered(name);
+        } finally {
+            RestMetrics.unregister(name);
+        }
+        assert !server.isRegistered(name);
+        System.out.println("Metrics passed on " + engine);
+    }
+
+    private static MetricsSnapshot metricsScript(Engine engine, boolean metrics) {
+        var clock = new VirtualClock(ORIGIN);
+        var rm = engine.create(List.of(new Table(2), new Table(4)), RestSettings.defaults().withClock(clock).withManualDispatch(true).withMetrics(metrics));
+        var two = group(clock, 2);
+        var four = group(clock, 4);
+        rm.onArrive(two);
+        rm.onArrive(four);
+        var waitingTwo = group(clock, 2);
+        var waitingFour = group(clock, 4);
+        var one = group(clock, 1);
+        List.of(waitingTwo, waitingFour, one).forEach(rm::onArrive);
+        rm.abandonQueue(one);
+        clock.advance(Duration.ofSeconds(1));
+        rm.onLeave(two);
+        assert rm.dispatch();
+        clock.advance(Duration.ofSeconds(2));
+        rm.onLeave(four);
+        assert rm.dispatch() && !rm.dispatch();
+        return rm.metrics();
+    }
+
+    /**
+     * Seats groups one by one at a single table, each after the given wait.
+     */
+    private static HistogramSnapshot waits(Engine engine, long... waitNanos) {
+        var clock = new VirtualClock(ORIGIN);
+        var rm = engine.create(List.of(new Table(2)), RestSettings.defaults().withClock(clock).withManualDispatch(true).withMetrics(true));
+        var seated = group(clock, 2);
+        rm.onArrive(seated);
+        for (long wait : waitNanos) {
+            var waiting = group(clock, 2);
+            rm.onArrive(waiting);
+            clock.advance(Duration.ofNanos(wait));
+            rm.onLeave(seated);
+            assert rm.dispatch();
+            seated = waiting;
+        }
+        return rm.metrics().waitTime();
+    }
+
+    /**
+     * Routing and stealing, on shards dispatched by hand and then on their own dispatcher threads.
+     */
+    private static void sharded(Engine engine) throws InterruptedException {
+        var clock = new VirtualClock(ORIGIN);
+        var manual = RestSettings.defaults().withClock(clock).withManualDispatch(true).withMetrics(true);
+        var rooms = engine.sharded(List.of(List.of(new Table(2), new Table(4)), List.of(new Table(2), new Table(4))), manual);
+        // each arrival goes to the least occupied room, the first one on a tie
+        var seated = List.of(group(clock, 4), group(clock, 4), group(clock, 2), group(clock, 2));
+        var seatedSeats = List.of(List.of(4, 0), List.of(4, 4), List.of(6, 4), List.of(6, 6));
+        for (int i = 0; i < seated.size(); i++) {
+            rooms.onArrive(seated.get(i));
+            assert rooms.metrics().stream().map(MetricsSnapshot::seatedSeats).toList().equals(seatedSeats.get(i)) : i;
+        }
+        // once both are full, to the shortest line
+        rooms.onArrive(group(clock, 2));
+        rooms.onArrive(group(clock, 2));
+        assert rooms.metrics().stream().allMatch(shard -> shard.queueLength() == 1) && rooms.getQueueCount() == 2;
+
+        // a group waiting in the first room is seated at the only free table, which is in the second one
+        var shards = engine.sharded(List.of(List.of(new Table(2)), List.of(new Table(4))), manual);
+        var two = group(clock, 2);
+        var four = group(clock, 4);
+        var waiting = group(clock, 2);
+        List.of(two, four, waiting).forEach(shards::onArrive);
+        assert shards.metrics().get(0).queueLength() == 1 && !shards.dispatch();
+        shards.onLeave(four);
+        assert shards.dispatch() && shards.lookup(waiting).size() == 4 && shards.getQueueCount() == 0;
+        assert shards.metrics().get(1).count(Counter.STOLEN) == 1 && shards.metrics().get(0).count(Counter.STOLEN) == 0;
+        shards.onLeave(waiting);
+        assert shards.getSeatCount() == 2;
+
+        // the same on dispatcher threads, where the departure wakes the dispatcher of the second room
+        var threaded = engine.sharded(List.of(List.of(new Table(2)), List.of(new Table(4))), RestSettings.defaults().withClock(clock));
+        var stolen = group(clock, 2);
+        var seatedFour = group(clock, 4);
+        List.of(group(clock, 2), seatedFour, stolen).forEach(threaded::onArrive);
+        assert threaded.lookup(stolen) == null;
+        threaded.onLeave(seatedFour);
+        await(() -> threaded.lookup(stolen) != null);
+        assert threaded.lookup(stolen).size() == 4 && threaded.getQueueCount() == 0;
+        System.out.println("Shards passed on " + engine);
+    }
+
+    /**
+     * Closing stops the dispatcher threads and abandons whoever still waits, draining waits until the line has been seated.
+     */
+    private static void lifecycle(Engine engine) throws InterruptedException {
+        var clock = new VirtualClock(ORIGIN);
+        var threads = new LinkedBlockingQueue<Thread>();
+        var abandoned = new LinkedBlockingQueue<ClientsGroup>();
+        var settings = RestSettings.defaults().withClock(clock).withMaxWait(Duration.ofHours(1), abandoned::add).withDispatchers(task -> {
+            var thread = new Thread(task);
+            thread.setDaemon(true);
+            threads.add(thread);
+            return thread;
+        });
+        var rm = engine.create(List.of(new Table(2)), settings);
+        var seated = group(clock, 2);
+        var waiting = group(clock, 2);
+        rm.onArrive(seated);
+        rm.onArrive(waiting);
+        var dispatcher = threads.remove();
+        assert dispatcher.isAlive();
+        rm.close();
+        assert !dispatcher.isAlive() && threads.isEmpty();
+        assert waiting.equals(abandoned.poll()) && abandoned.isEmpty() && rm.getQueueCount() == 0;
+        try {
+            rm.onArrive(group(clock, 2));
+            assert false : "arrived after closing";
+        } catch (IllegalStateException e) {
+            assert rm.getQueueCount() == 0;
+        }
+        // the seated groups may still leave
+        rm.onLeave(seated);
+        assert rm.getSeatCount() == 0;
+        rm.close();
+
+        var rooms = engine.sharded(List.of(List.of(new Table(2)), List.of(new Table(2))), settings);
+        rooms.onArrive(group(clock, 2));
+        rooms.onArrive(group(clock, 2));
+        var shardDispatchers = List.of(threads.remove(), threads.remove());
+        rooms.close();
+        assert shardDispatchers.stream().noneMatch(Thread::isAlive);
+
+        var draining = engine.create(List.of(new Table(2)), settings);
+        var first = group(clock, 2);
+        var second = group(clock, 2);
+        draining.onArrive(first);
+        draining.onArrive(second);
+        assert !draining.drain(Duration.ofMillis(50)) && draining.getQueueCount() == 1; // nobody has left
+        try {
+            draining.onArrive(group(clock, 2));
+            assert false : "arrived while draining";
+        } catch (IllegalStateException e) {
+            assert draining.getQueueCount() == 1;
+        }
+        var leaving = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            draining.onLeave(first);
+        });
+        leaving.start();
+        assert draining.drain(Duration.ofSeconds(5)) && draining.lookup(second) != null;
+        leaving.join();
+        draining.close();
+        assert abandoned.isEmpty();
+        System.out.println("Lifecycle passed on " + engine);
+    }
+
+    private static void futures(Engine engine) throws Exception {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true).withMaxWait(Duration.ofSeconds(1), null);
+        CompletableFuture<Table> closing;
+        try (var rm = engine.create(List.of(new Table(2)), settings)) {
+            var first = group(clock, 2);
+            assert rm.arrive(first).getNow(null).size() == 2;
+
+            // completed by the dispatcher once a table is free
+            var second = group(clock, 2);
+            var seat = rm.arrive(second);
+            assert !seat.isDone();
+            try {
+                rm.arrive(second);
+                assert false : "arrived twice";
+            } catch (IllegalStateException expected) {
+                // still waiting from the first call
+            }
+            rm.onLeave(first);
+            rm.dispatch();
+            assert seat.getNow(null).size() == 2;
+
+            // an abandoned group fails its future, a cancelled future takes its group out of the line
+            var abandoning = group(clock, 1);
+            var abandoned = rm.arrive(abandoning);
+            assert rm.abandonQueue(abandoning);
+            assert failure(abandoned) instanceof AbandonedException;
+            var cancelled = rm.arrive(group(clock, 1));
+            assert rm.getQueueCount() == 1 && cancelled.cancel(false) && rm.getQueueCount() == 0;
+
+            // the max wait is checked on every tick of the expiry scheduler, against the clock of the restaurant
+            var expiring = rm.arrive(group(clock, 2));
+            clock.advance(Duration.ofSeconds(2));
+            assert failure(expiring) instanceof TimeoutException && rm.getQueueCount() == 0;
+
+            closing = rm.arrive(group(clock, 2));
+        }
+        assert failure(closing) instanceof AbandonedException;
+
+        // a group stolen by another room is completed by the thief
+        var rooms = engine.sharded(List.of(List.of(new Table(2)), List.of(new Table(4))), settings);
+        var four = group(clock, 4);
+        rooms.arrive(group(clock, 2));
+        rooms.arrive(four);
+        var stolen = rooms.arrive(group(clock, 2));
+        assert !stolen.isDone();
+        rooms.onLeave(four);
+        assert rooms.dispatch() && stolen.getNow(null).size() == 4;
+        rooms.close();
+        System.out.println("Futures passed on " + engine);
+    }
+
+    /**
+     * A burst has to end the same as its groups one by one, so two restaurants are fed alike, one of them in bursts.
+     */
+    private static void batches(Engine engine) {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true);
+        var tables = List.of(new Table(2), new Table(2), new Table(3), new Table(4), new Table(4), new Table(6));
+        var random = new Random(15);
+        var groups = new ArrayList<ClientsGroup>();
+        try (var bursts = engine.create(tables, settings); var singles = engine.create(tables, settings)) {
+            for (int round = 0; round < 200; round++) {
+                var arrivals = new ArrayList<ClientsGroup>();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    arrivals.add(group(clock, 1 + random.nextInt(6)));
+                }
+                groups.addAll(arrivals);
+                bursts.onArriveAll(arrivals);
+                arrivals.forEach(singles::onArrive);
+                assert bursts.occupancy().placements().equals(singles.occupancy().placements());
+
+                var leaving = new ArrayList<>(groups.stream().filter(bursts.occupancy().placements()::containsKey).toList());
+                Collections.shuffle(leaving, random);
+                leaving = new ArrayList<>(leaving.subList(0, random.nextInt(leaving.size() + 1)));
+                bursts.onLeaveAll(leaving);
+                leaving.forEach(singles::onLeave);
+                bursts.dispatch();
+                singles.dispatch();
+                assert bursts.occupancy().placements().equals(singles.occupancy().placements());
+                assert bursts.getQueueCount() == singles.getQueueCount() && bursts.getSeatCount() == singles.getSeatCount();
+            }
+
+            // a group which is not seated fails the burst, the groups before it have left
+            var seated = groups.stream().filter(bursts.occupancy().placements()::containsKey).toList();
+            assert seated.size() >= 2;
+            try {
+                bursts.onLeaveAll(List.of(seated.get(0), group(clock, 1), seated.get(1)));
+                assert false : "left without a seat";
+            } catch (IllegalStateException expected) {
+                assert bursts.lookup(seated.get(0)) == null && bursts.lookup(seated.get(1)) != null;
+            }
+        }
+
+        // the departures of a sharded burst are split by room, an unknown group stops it the same way
+        try (var rooms = engine.sharded(List.of(List.of(new Table(2), new Table(4)), List.of(new Table(2), new Table(4))), settings)) {
+            var seated = List.of(group(clock, 4), group(clock, 4), group(clock, 2), group(clock, 2));
+            rooms.onArriveAll(seated);
+            var waiting = List.of(group(clock, 2), group(clock, 4));
+            rooms.onArriveAll(waiting);
+            assert rooms.getSeatCount() == 12 && rooms.metrics().stream().allMatch(room -> room.queueLength() == 1);
+            rooms.onLeaveAll(List.of(seated.get(0), seated.get(1)));
+            assert rooms.metrics().stream().map(MetricsSnapshot::seatedSeats).toList().equals(List.of(2, 2));
+            assert rooms.dispatch() && waiting.stream().allMatch(group -> rooms.lookup(group) != null) && rooms.getQueueCount() == 0;
+            try {
+                rooms.onLeaveAll(List.of(seated.get(2), group(clock, 2), seated.get(3)));
+                assert false : "left without a seat";
+            } catch (IllegalStateException expected) {
+                assert rooms.lookup(seated.get(2)) == null && rooms.lookup(seated.get(3)) != null;
+            }
+        }
+        System.out.println("Batches passed on " + engine);
+    }
+
+    /**
+     * A restaurant recovers from the files a crash leaves behind, with neither a close nor a snapshot since the events,
+     * and journals nothing once it is closed.
+     */
+    private static void journal(Engine engine) throws IOException {
+        var directory = Files.createTempDirectory("restaurant-journal");
+        var crashed = Files.createTempDirectory("restaurant-crashed");
+        var clock = new VirtualClock(ORIGIN);
+        var tables = List.of(new Table(2), new Table(4));
+        var two = group(clock, 2);
+        var four = group(clock, 4);
+        var waiting = group(clock, 4);
+        try (var rm = engine.create(tables, RestSettings.defaults().withClock(clock).withManualDispatch(true).withJournal(directory))) {
+            rm.onArriveAll(List.of(two, four, waiting));
+            var gone = group(clock, 1);
+            rm.onArrive(gone);
+            rm.abandonQueue(gone);
+
+            try (var files = Files.list(directory)) {
+                for (var file : files.toList()) {
+                    Files.copy(file, crashed.resolve(file.getFileName()));
+                }
+            }
+            try (var recovered = engine.create(tables, RestSettings.defaults().withClock(new VirtualClock(ORIGIN)).withManualDispatch(true).withJournal(crashed))) {
+                assert recovered.lookup(two).size() == 2 && recovered.lookup(four).size() == 4;
+                assert recovered.getQueueCount() == 1 && recovered.lookup(gone) == null;
+                recovered.onLeave(four);
+                recovered.dispatch();
+                assert recovered.lookup(waiting).size() == 4;
+            }
+        }
+
+        // the restaurant has been closed with both tables taken, a departure after that is not journaled anymore
+        var reopened = engine.create(tables, RestSettings.defaults().withClock(new VirtualClock(ORIGIN)).withManualDispatch(true).withJournal(directory));
+        assert reopened.lookup(two).size() == 2 && reopened.lookup(four).size() == 4 && reopened.getQueueCount() == 0;
+        reopened.close();
+        reopened.onLeave(two);
+        try (var again = engine.create(tables, RestSettings.defaults().withClock(new VirtualClock(ORIGIN)).withManualDispatch(true).withJournal(directory))) {
+            assert again.lookup(two) != null && again.getSeatCount() == 6;
+        }
+        System.out.println("Journal passed on " + engine);
+    }
+
+    /**
+     * Snapshots taken while several threads arrive, leave, abandon and dispatch at once never show a change halfway.
+     */
+    private static void occupancy(Engine engine) throws InterruptedException {
+        var tables = List.of(new Table(2), new Table(2), new Table(3), new Table(4), new Table(4), new Table(6));
+        var rm = engine.create(tables, RestSettings.defaults().withClock(new VirtualClock(ORIGIN)).withManualDispatch(true));
+        var arrived = new AtomicInteger();
+        var done = new AtomicInteger();
+        var writers = new ArrayList<Thread>();
+        var remaining = ConcurrentHashMap.<ClientsGroup>newKeySet();
+        for (int w = 0; w < 4; w++) {
+            long base = w * 1_000_000L;
+            var random = new Random(w);
+            writers.add(new Thread(() -> {
+                var mine = new ArrayList<ClientsGroup>();
+                for (int i = 0; i < 2_000; i++) {
+                    var group = new ClientsGroup(1 + random.nextInt(6), base + i);
+                    arrived.incrementAndGet();
+                    rm.onArrive(group);
+                    mine.add(group);
+                    var other = mine.get(random.nextInt(mine.size()));
+                    if (rm.lookup(other) != null) { // only its own writer lets a group leave, so it stays seated meanwhile
+                        rm.onLeave(other);
+                        mine.remove(other);
+                    } else if (random.nextInt(4) == 0 && rm.abandonQueue(other)) {
+                        mine.remove(other);
+                    }
+                    rm.dispatch();
+                }
+                remaining.addAll(mine);
+                done.incrementAndGet();
+            }));
+        }
+        writers.forEach(Thread::start);
+        int snapshots = 0;
+        long version = -1;
+        while (done.get() < writers.size()) {
+            var snapshot = rm.occupancy();
+            int seated = 0;
+            for (var placement : snapshot.placements().entrySet()) {
+                assert snapshot.tables().get(placement.getValue()).groups().contains(placement.getKey());
+                seated += placement.getKey().size();
+            }
+            assert seated == snapshot.seatedSeats() : seated + " seats placed, " + snapshot.seatedSeats() + " taken";
+            for (var table : snapshot.tables()) {
+                assert table.table().size() - table.seatsLeft() == table.groups().stream().mapToInt(ClientsGroup::size).sum();
+            }
+            assert snapshot.tables().stream().mapToInt(table -> table.groups().size()).sum() == snapshot.placements().size();
+            assert snapshot.placements().size() + snapshot.queueLength() <= arrived.get();
+            assert snapshot.version() >= version;
+            version = snapshot.version();
+            snapshots++;
+        }
+        for (var writer : writers) {
+            writer.join();
+        }
+
+        // at rest, whoever has neither left nor abandoned is either placed or counted in the line of its size
+        var snapshot = rm.occupancy();
+        var waitingBySize = new Integer[snapshot.waitingBySize().size()];
+        Arrays.fill(waitingBySize, 0);
+        for (var group : remaining) {
+            if (rm.lookup(group) != null) {
+                assert snapshot.lookup(group).equals(rm.lookup(group));
+            } else {
+                assert !snapshot.placements().containsKey(group);
+                waitingBySize[group.size()]++;
+            }
+        }
+        assert snapshot.placements().size() + snapshot.queueLength() == remaining.size();
+        assert snapshot.waitingBySize().equals(List.of(waitingBySize)) : snapshot.waitingBySize();
+        assert snapshot.seatedSeats() == rm.getSeatCount() && snapshot.queueLength() == rm.getQueueCount();
+        System.out.println("Occupancy passed on " + engine + " after " + snapshots + " snapshots");
+    }
+
+    /**
+     * Tables added, removed, disabled and enabled while the restaurant serves.
+     */
+    private static void resize(Engine engine) {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true);
+        try (var rm = engine.create(List.of(new Table(2), new Table(4)), settings)) {
+            var filler = group(clock, 4);
+            rm.onArrive(filler);
+            var waiting = group(clock, 4);
+            rm.onArrive(waiting);
+            assert rm.lookup(waiting) == null;
+
+            // an added table takes the line at once
+            int added = rm.addTable(new Table(6));
+            assert added == 2;
+            rm.dispatch();
+            assert rm.lookup(waiting).size() == 6 && rm.getQueueCount() == 0;
+
+            // a removed table drains: its group stays until it leaves, nobody is seated there anymore
+            var drained = rm.removeTable(added);
+            assert !drained.isDone() && rm.lookup(waiting) != null;
+            rm.onLeave(waiting);
+            assert drained.isDone() && rm.occupancy().tables().size() == 3;
+            var big = group(clock, 6);
+            rm.onArrive(big);
+            rm.dispatch();
+            assert rm.lookup(big) == null;
+
+            // a disabled table keeps its group but takes no other
+            rm.disableTable(1);
+            rm.onLeave(filler);
+            var four = group(clock, 4);
+            rm.onArrive(four);
+            rm.dispatch();
+            assert rm.lookup(four) == null;
+            rm.enableTable(1);
+            rm.dispatch();
+            assert rm.lookup(four) != null;
+        }
+        System.out.println("Resize passed on " + engine);
+    }
+
+    /**
+     * Two instances on one file, and a third in another process, share one restaurant.
+     */
+    private static void sharedFile() throws Exception {
+        var file = Files.createTempFile("restaurant-shared", ".bin");
+        Files.delete(file);
+        var tables = List.of(new Table(2), new Table(4));
+        try (var here = new SharedRestManager(file, tables); var there = new SharedRestManager(file, tables)) {
+            // both instances see every seat and every waiting group of the other
+            var two = ClientsGroup.ofCurrentTime(2);
+            here.onArrive(two);
+            assert there.lookup(two).size() == 2 && there.getSeatCount() == 2;
+            var four = ClientsGroup.ofCurrentTime(4);
+            here.onArrive(four);
+            var three = ClientsGroup.ofCurrentTime(3);
+            there.onArrive(three);
+            assert there.lookup(three) == null && here.getQueueCount() == 1;
+
+            // a departure in one instance seats the group queued by the other
+            here.onLeave(four);
+            assert there.lookup(three).size() == 4 && here.getQueueCount() == 0;
+            there.onLeave(two);
+            assert here.lookup(two) == null;
+
+            // and so does another process, the arrival of its group is on the monotonic clock they share
+            var child = new ProcessBuilder(ProcessHandle.current().info().command().orElse("java"),
+                    "-ea", "-cp", System.getProperty("java.class.path"), "Checks", "--shared-child", file.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            long arrival = Long.parseLong(new String(child.getInputStream().readAllBytes()).strip());
+            assert child.waitFor() == 0;
+            var fromChild = new ClientsGroup(2, arrival);
+            assert here.lookup(fromChild).size() == 2 && there.getSeatCount() == 5;
+            here.onLeaveAll(List.of(fromChild, three));
+            assert there.getSeatCount() == 0;
+
+            try {
+                new SharedRestManager(file, List.of(new Table(6))).close();
+                assert false : "opened with other tables";
+            } catch (IllegalArgumentException expected) {
+                // the file holds the tables 2 and 4
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        // a sweep never abandons a group for the arrival of an older one, whose cell the ring has handed on
+        try (var here = new SharedRestManager(file, tables, 2); var there = new SharedRestManager(file, tables, 2)) {
+            here.onArriveAll(List.of(ClientsGroup.ofCurrentTime(2), ClientsGroup.ofCurrentTime(4)));
+            var writing = new AtomicBoolean(true);
+            var sweeping = new Thread(() -> {
+                while (writing.get()) {
+                    there.abandonAllIf(Duration.ofMinutes(1));
+                }
+            });
+            sweeping.start();
+            try {
+                for (int i = 0; i < 30_000; i++) { // each group takes the cell of the group before the last, an old one every other time
+                    var group = i % 3 == 1 ? ClientsGroup.ofCurrentTime(1) : new ClientsGroup(1, RestClock.system().nanos() - TimeUnit.HOURS.toNanos(1));
+                    here.onArrive(group);
+                    assert here.abandonQueue(group) || i % 3 != 1 : "swept for an older arrival"; // an old one may be swept already
+                }
+            } finally {
+                writing.set(false);
+                sweeping.join();
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("Shared file passed");
+    }
+
+    /**
+     * The other process of {@link #sharedFile()}: seats a group of 2 and prints its arrival.
+     */
+    private static void sharedChild(Path file) {
+        try (var rm = new SharedRestManager(file, List.of(new Table(2), new Table(4)))) {
+            var group = ClientsGroup.ofCurrentTime(2);
+            rm.onArrive(group);
+            System.out.println(group.arrivalNanos());
+        }
+    }
+
+    /**
+     * Served by a shared restaurant, as it is the one refusing a single group of a burst: an arrival it cannot store.
+     */
+    private static void clientServer() throws IOException {
+        var file = Files.createTempFile("restaurant-served", ".bin");
+        Files.delete(file);
+        try (var rm = new SharedRestManager(file, List.of(new Table(2), new Table(4)));
+             var server = new RestServer(rm, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, RestClock.system());
+             var client = new RestClient(server.address())) {
+            var two = ClientsGroup.ofCurrentTime(2);
+            client.onArrive(two);
+            assert client.lookup(two).size() == 2 && rm.lookup(two).size() == 2;
+
+            // a burst failing in the middle fails only the group at fault, the others arrive once each
+            var four = ClientsGroup.ofCurrentTime(4);
+            var refused = new ClientsGroup(1, Long.MIN_VALUE);
+            var waiting = ClientsGroup.ofCurrentTime(3);
+            var pipeline = client.pipeline();
+            var replies = List.of(pipeline.onArrive(four), pipeline.onArrive(refused), pipeline.onArrive(waiting));
+            pipeline.sync();
+            assert !replies.get(0).isCompletedExceptionally() && !replies.get(2).isCompletedExceptionally();
+            assert replies.get(1).isCompletedExceptionally();
+            assert client.lookup(four).size() == 4 && client.lookup(waiting) == null && client.getQueueCount() == 1;
+
+            // the departure seats the waiting group right away, a shared restaurant has no dispatcher thread
+            client.onLeave(four);
+            assert client.lookup(four) == null && client.lookup(waiting).size() == 4;
+            client.onLeaveAll(List.of(two, waiting));
+            assert client.getSeatCount() == 0 && client.getQueueCount() == 0;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("Client and server passed");
+    }
+
+    /**
+     * A steady pace of departures gives the expected wait, and queries alone do not move it.
+     */
+    private static void waitEstimates(Engine engine) {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true);
+        try (var rm = engine.create(List.of(new Table(2)), settings)) {
+            assert rm.estimatedWaitNanos(2) == 0;
+            // a group of 2 stays a minute, so two seats are freed per minute
+            for (int i = 0; i < 10; i++) {
+                var group = group(clock, 2);
+                rm.onArrive(group);
+                clock.advance(Duration.ofMinutes(1));
+                rm.onLeave(group);
+            }
+            rm.onArrive(group(clock, 2));
+            rm.onArrive(group(clock, 2));
+            // the waiting 2 and the newcomer need 4 seats freed, two minutes
+            long estimate = rm.estimatedWaitNanos(2);
+            assert estimate > Duration.ofSeconds(100).toNanos() && estimate < Duration.ofSeconds(140).toNanos() : estimate;
+
+            // queries only read the averages, it is the departures and the dispatcher passes which fold them
+            clock.advance(Duration.ofMinutes(10));
+            assert rm.estimatedWaitNanos(2) == estimate;
+            rm.dispatch();
+            assert rm.estimatedWaitNanos(2) > estimate;
+        }
+        System.out.println("Wait estimates passed on " + engine);
+    }
+
+    /**
+     * Held tables are kept from the walk-ins until the booked group takes them or the hold is cancelled,
+     * and the window packer does not plan on them.
+     */
+    private static void reservations(Engine engine) {
+        var clock = new VirtualClock(ORIGIN);
+        var settings = RestSettings.defaults().withClock(clock).withManualDispatch(true);
+        try (var rm = engine.create(List.of(new Table(2), new Table(4)), settings)) {
+            // the 4 is booked in half an hour, so a walk-in of 4 waits and a walk-in of 2 still gets the 2
+            var booking = rm.reserve(4, ORIGIN.plusMinutes(30), Duration.ofHours(2));
+            assert booking != null && booking.slot() == 1;
+            assert rm.freeUntil(1).equals(ORIGIN.plusMinutes(30)) && rm.freeUntil(0) == null;
+            assert rm.reserve(3, ORIGIN.plusHours(1), Duration.ofHours(1)) == null; // overlaps the only table fitting
+            var walkIn = group(clock, 4);
+            rm.onArrive(walkIn);
+            rm.dispatch();
+            assert rm.lookup(walkIn) == null && rm.getQueueCount() == 1;
+            var small = group(clock, 2);
+            rm.onArrive(small);
+            assert rm.lookup(small).size() == 2;
+
+            // the booked group takes its table, the hold is gone then
+            clock.advance(Duration.ofMinutes(30));
+            var booked = group(clock, 3);
+            assert rm.seatReservation(booking, booked) && rm.lookup(booked).size() == 4;
+            assert !rm.cancelReservation(booking);
+            rm.onLeave(booked);
+            rm.dispatch();
+            assert rm.lookup(walkIn) != null && rm.getQueueCount() == 0;
+            rm.onLeaveAll(List.of(walkIn, small));
+
+            // a cancelled hold gives the table back to the line
+            var late = rm.reserve(4, ORIGIN.plusHours(1), Duration.ofHours(1));
+            var another = group(clock, 4);
+            rm.onArrive(another);
+            assert rm.lookup(another) == null;
+            assert rm.cancelReservation(late);
+            rm.dispatch();
+            assert rm.lookup(another) != null;
+        }
+        System.out.println("Reservations passed on " + engine);
+
+        // a held table is no capacity for the window packer: planned as one, the 4 would get it, fail there,
+        // and leave the free table to the plain pass, which seats the 4 before the two older 2s
+        clock = new VirtualClock(ORIGIN);
+        settings = RestSettings.defaults().withClock(clock).withManualDispatch(true).withSeatingPolicy(new WindowBestFitSeating());
+        try (var rm = engine.create(List.of(new Table(4), new Table(4)), settings)) {
+            var fillers = List.of(group(clock, 4), group(clock, 4));
+            rm.onArriveAll(fillers);
+            var window = List.of(group(clock, 2), group(clock, 2), group(clock, 4));
+            rm.onArriveAll(window);
+            assert rm.getQueueCount() == 3;
+            var hold = rm.reserve(4, ORIGIN.plusMinutes(10), Duration.ofHours(2));
+            rm.onLeaveAll(fillers);
+            rm.dispatch();
+            var placements = rm.occupancy().placements();
+            Integer free = 1 - hold.slot();
+            assert free.equals(placements.get(window.get(0))) && free.equals(placements.get(window.get(1)));
+            assert rm.lookup(window.get(2)) == null && rm.getQueueCount() == 1;
+        }
+        System.out.println("Window seating around a hold passed on " + engine);
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws InterruptedException, TimeoutException {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("Completed normally");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+}
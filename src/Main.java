@@ -1,9 +1,12 @@
 import com.restaurant.ClientsGroup;
 import com.restaurant.Manager;
+import com.restaurant.RestSettings;
+import com.restaurant.clock.VirtualClock;
 import com.restaurant.wait.NoneOnWait;
 import com.restaurant.RestManager;
 import com.restaurant.Table;
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public class Main {
@@ -18,18 +21,37 @@ public class Main {
                 since we are testing concurrent program and only our OS decides context-switching.
                 """);
         var tables = List.of(new Table(2), new Table(4));
+        // the waits of the groups are measured on this clock, so the test does not have to wait for seconds
+        var clock = new VirtualClock(LocalDateTime.now());
+        var settings = RestSettings.defaults().withClock(clock);
         // You can play with these 2 options as well
-//        Manager rm = new RestManager(tables, true, new SpinOnWait());
-//        Manager rm = new RestManager(tables, true, new YieldOnWait());
+//        Manager rm = new RestManager(tables, true, new SpinOnWait(), settings);
+//        Manager rm = new RestManager(tables, true, new YieldOnWait(), settings);
+//        Manager rm = new RestManager(tables, true, new ParkOnWait(), settings);
+//        Manager rm = new RestManager(tables, true, new BackoffOnWait(), settings);
+//        Manager rm = new RestManager(tables, false, new NoneOnWait(), settings);
 
-        Manager rm = new RestManager(tables, true, new NoneOnWait());
+        Manager rm = new RestManager(tables, true, new NoneOnWait(), settings);
 
-        var cg = ClientsGroup.ofCurrentTime(1);
-        var cg1 = ClientsGroup.ofCurrentTime(2);
-        var cg2 = ClientsGroup.ofCurrentTime(3);
-        var cg3 = ClientsGroup.ofCurrentTime(4);
-        var cg4 = ClientsGroup.ofCurrentTime(5);
-        var cg5 = ClientsGroup.ofCurrentTime(6);
+        script(rm, clock);
+
+        System.out.println("All tests passed!");
+
+        // to check if the assertion is enabled (-ea VM option)
+        assert 0 == 1 : "Assertions are enabled!";
+
+    }
+
+    /**
+     * Runs the tests against a restaurant with the tables 2 and 4, whose groups arrive on the given clock.
+     */
+    static void script(Manager rm, VirtualClock clock) throws InterruptedException {
+        var cg = ClientsGroup.ofCurrentTime(1, clock);
+        var cg1 = ClientsGroup.ofCurrentTime(2, clock);
+        var cg2 = ClientsGroup.ofCurrentTime(3, clock);
+        var cg3 = ClientsGroup.ofCurrentTime(4, clock);
+        var cg4 = ClientsGroup.ofCurrentTime(5, clock);
+        var cg5 = ClientsGroup.ofCurrentTime(6, clock);
 
         // nobody has seats
         assert rm.lookup(cg) == null
@@ -125,6 +147,7 @@ public class Main {
         System.out.println("Passing ...");
 
         // cg4 leaves, because it waited for more than 3 seconds
+        clock.advance(Duration.ofSeconds(4));
         assert rm.lookup(cg4) == null;
         assert rm.abandonQueueIf(cg4, Duration.ofSeconds(3));
         assert rm.lookup(cg4) == null;
@@ -133,6 +156,7 @@ public class Main {
         System.out.println("Passing ...");
 
         // Everybody leaves the queue, because they waited for more than 5 seconds
+        clock.advance(Duration.ofSeconds(2));
         assert rm.abandonAllIf(Duration.ofSeconds(5));
         assert rm.getQueueCount() == 0;
         assert rm.getSeatCount() == 3; // cg2
@@ -142,11 +166,5 @@ public class Main {
                 && rm.lookup(cg3) == null
                 && rm.lookup(cg4) == null
                 && rm.lookup(cg5) == null;
-
-        System.out.println("All tests passed!");
-
-        // to check if the assertion is enabled (-ea VM option)
-        assert 0 == 1 : "Assertions are enabled!";
-
     }
 }
@@ -0,0 +1,213 @@
+package com.restaurant;
+
+import com.restaurant.wait.ActionOnWait;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Every table is guarded by its own lock, so seating at different tables never contends.
+ * <p>The dispatcher sleeps on a condition, which is signalled by arrivals and departures, so an idle restaurant costs no CPU.
+ * The wait strategy is therefore never consulted in this mode.
+ */
+final class BlockingRestaurantManager extends RestaurantManager {
+
+    /**
+     * Copied on every change of the table set, the states themselves are shared by the copies.
+     */
+    private volatile TableState[] tableStates = new TableState[0];
+    private final SeatIndex seatIndex;
+    private final Map<ClientsGroup, Integer> placements = new ConcurrentHashMap<>();
+    private final ReentrantLock dispatcherLock = new ReentrantLock();
+    private final Condition changed = this.dispatcherLock.newCondition();
+    /**
+     * Set by producers before signalling, so a change made during a dispatcher pass is never lost.
+     */
+    private final AtomicBoolean signalled = new AtomicBoolean();
+
+    public BlockingRestaurantManager(List<Table> tables, ActionOnWait actionOnBusyWait, RestSettings settings) {
+        super(tables, actionOnBusyWait, settings);
+        this.seatIndex = new SeatIndex(i -> {
+            var tableState = this.tableStates[i];
+            return tableState.open ? tableState.seatsLeft : 0;
+        }, this::isHeld);
+        this.addSlots(0, tables);
+    }
+
+    @Override
+    protected void addSlots(int first, List<Table> tables) {
+        var tableStates = Arrays.copyOf(this.tableStates, first + tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            tableStates[first + i] = new TableState(tables.get(i));
+        }
+        this.tableStates = tableStates;
+        this.seatIndex.add(tables);
+    }
+
+    @Override
+    protected void setOpen(int index, boolean open) {
+        var tableState = this.tableStates[index];
+        tableState.lock.lock();
+        try {
+            tableState.open = open;
+            this.seatIndex.sync(index);
+        } finally {
+            tableState.lock.unlock();
+        }
+    }
+
+    @Override
+    protected boolean isOpen(int index) {
+        return this.tableStates[index].open;
+    }
+
+    @Override
+    protected boolean isEmpty(int index) {
+        return this.tableStates[index].clientsGroups.isEmpty();
+    }
+
+    @Override
+    protected Table table(int index) {
+        return this.tableStates[index].table;
+    }
+
+    @Override
+    protected Table release(ClientsGroup group) {
+        var index = Optional.ofNullable(this.placements.get(group)).orElseThrow(IllegalStateException::new);
+        var tableState = this.tableStates[index];
+        tableState.lock.lock();
+        try {
+            var groups = new ArrayList<>(tableState.clientsGroups);
+            if (!groups.remove(group)) {
+                throw new IllegalStateException();
+            }
+            tableState.clientsGroups = List.copyOf(groups);
+            tableState.seatsLeft += group.size();
+            this.placements.remove(group, index);
+            this.seatIndex.sync(index);
+        } finally {
+            tableState.lock.unlock();
+        }
+        return tableState.table;
+    }
+
+    @Override
+    public Table lookup(ClientsGroup group) {
+        var index = this.placements.get(group);
+        if (index == null) {
+            return null;
+        }
+        var tableState = this.tableStates[index];
+        tableState.lock.lock();
+        try {
+            return tableState.clientsGroups.contains(group) ? tableState.table : null;
+        } finally {
+            tableState.lock.unlock();
+        }
+    }
+
+    @Override
+    protected void signalDispatcher() {
+        if (this.signalled.compareAndSet(false, true)) {
+            this.dispatcherLock.lock();
+            try {
+                this.changed.signal();
+            } finally {
+                this.dispatcherLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    protected void loopOverClientGroupQueue() {
+        while (!this.closed) {
+            this.dispatcherLock.lock();
+            try {
+                while (!this.signalled.getAndSet(false)) {
+                    this.changed.awaitUninterruptibly();
+                }
+            } finally {
+                this.dispatcherLock.unlock();
+            }
+            if (!this.closed) {
+                this.dispatch();
+            }
+        }
+    }
+
+    @Override
+    protected int findFreeTable(ClientsGroup group) {
+        return this.seatIndex.findFree(group.size());
+    }
+
+    @Override
+    protected int findNonFreeTable(ClientsGroup group) {
+        return this.seatIndex.findPartial(group.size());
+    }
+
+    @Override
+    protected int largestFit() {
+        return this.seatIndex.largestFit();
+    }
+
+    @Override
+    protected SeatIndex seatIndex() {
+        return this.seatIndex;
+    }
+
+    @Override
+    protected List<OccupancySnapshot.TableView> tableViews() {
+        var tableStates = this.tableStates;
+        return IntStream.range(0, Math.min(this.tableCount(), tableStates.length))
+                .mapToObj(i -> new OccupancySnapshot.TableView(tableStates[i].table, this.status(i, tableStates[i].open),
+                        tableStates[i].seatsLeft, tableStates[i].clientsGroups))
+                .toList();
+    }
+
+    @Override
+    protected boolean trySeatAt(ClientsGroup group, int index, boolean booked) {
+        var tableState = this.tableStates[index];
+        tableState.lock.lock();
+        try {
+            if (!this.canSeat(group, index, tableState.open, tableState.seatsLeft, booked)) { // the index is a hint, the table may have been taken or closed in the meantime
+                return false;
+            }
+            var groups = new ArrayList<>(tableState.clientsGroups);
+            groups.add(group);
+            tableState.clientsGroups = List.copyOf(groups);
+            tableState.seatsLeft -= group.size();
+            this.placements.put(group, index);
+            this.seatIndex.sync(index);
+            this.seatTaken(group, index);
+            return true;
+        } finally {
+            tableState.lock.unlock();
+        }
+    }
+
+    /**
+     * Mutable counterpart of {@link SeatData}, guarded by its own lock.
+     * <p>{@code seatsLeft} is volatile, so the capacity index can validate its hints without locking,
+     * and the groups are an immutable list replaced on every change, so a consistent read needs no lock either.
+     */
+    private static final class TableState {
+        private final Table table;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile List<ClientsGroup> clientsGroups = List.of();
+        private volatile int seatsLeft;
+        private volatile boolean open = true;
+
+        private TableState(Table table) {
+            this.table = table;
+            this.seatsLeft = table.size();
+        }
+    }
+}
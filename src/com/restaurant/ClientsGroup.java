@@ -1,20 +1,45 @@
 package com.restaurant;
 
+import com.restaurant.clock.RestClock;
 import com.restaurant.exception.ClientNumberException;
 
 import java.time.LocalDateTime;
 
-public record ClientsGroup(int size, LocalDateTime arrivalTime) {
+/**
+ * A group is told apart from the others by value, its size and its arrival, so a restaurant refuses a group
+ * equal to one still seated or waiting there.
+ *
+ * @param arrivalNanos arrival time on the timeline of a {@link RestClock}, the one of the restaurant the group is visiting
+ */
+public record ClientsGroup(int size, long arrivalNanos) {
 
     public static ClientsGroup ofCurrentTime(int size) {
-        return new ClientsGroup(size, LocalDateTime.now());
+        return ofCurrentTime(size, RestClock.system());
     }
 
+    /**
+     * Two groups of one size created on the same tick of a coarse clock are equal, only the first of them can arrive.
+     */
+    public static ClientsGroup ofCurrentTime(int size, RestClock clock) {
+        return new ClientsGroup(size, clock.nanos());
+    }
+
+    /**
+     * Arrival given in wall-clock time, it is converted on the system clock.
+     */
     public ClientsGroup(int size, LocalDateTime arrivalTime) {
+        this(size, RestClock.system().toNanos(arrivalTime));
+    }
+
+    public ClientsGroup(int size, long arrivalNanos) {
         if (!RestUtil.CLIENT_GROUPS.contains(size)) {
             throw new ClientNumberException("Invalid number of clients");
         }
         this.size = size;
-        this.arrivalTime = arrivalTime;
+        this.arrivalNanos = arrivalNanos;
+    }
+
+    public LocalDateTime arrivalTime(RestClock clock) {
+        return clock.toDateTime(this.arrivalNanos);
     }
 }
@@ -0,0 +1,100 @@
+package com.restaurant;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Hashed timing wheel evicting items whose deadline has passed.
+ *
+ * <p>Producers only append to a lock-free inbox, the buckets themselves are touched by the single thread which calls {@link #advance(long)}.
+ * <p>Nothing is done when an item leaves early: it is dropped when its bucket comes up and {@code expire} refuses it.
+ * So an item costs amortized O(1) either way, and a bucket is visited once per rotation.
+ * <p>Items further away than one rotation stay in their bucket until their round comes, so any deadline is supported.
+ *
+ * @param <T> type of the scheduled items
+ */
+final class ExpiryWheel<T> {
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Queue<Entry<T>>> buckets;
+    private final Queue<Entry<T>> inbox = new ConcurrentLinkedQueue<>();
+    /**
+     * Evicts the item, returns false if it has already left.
+     */
+    private final Predicate<T> expire;
+    private final long startNanos;
+    private long currentTick; // touched by the advancing thread only
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    ExpiryWheel(long tickNanos, int wheelSize, long startNanos, Predicate<T> expire) {
+        if (tickNanos <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickNanos = tickNanos;
+        this.mask = Math.max(size, 1) - 1;
+        this.buckets = IntStream.range(0, this.mask + 1).<Queue<Entry<T>>>mapToObj(i -> new ArrayDeque<>()).toList();
+        this.startNanos = startNanos;
+        this.expire = expire;
+    }
+
+    /**
+     * Thread-safe, may be called by any producer.
+     */
+    void schedule(T item, long deadlineNanos) {
+        this.inbox.offer(new Entry<>(item, this.tickOf(deadlineNanos)));
+    }
+
+    /**
+     * Evicts everything due until {@code nowNanos}. Must be called by a single thread at a time.
+     *
+     * @return number of evicted items
+     */
+    int advance(long nowNanos) {
+        long nowTick = this.tickOf(nowNanos);
+        int expired = this.transferInbox();
+        long ticks = Math.min(nowTick - this.currentTick + 1, this.mask + 1L); // a long pause still visits every bucket only once
+        for (long tick = this.currentTick; tick < this.currentTick + ticks; tick++) {
+            var bucket = this.buckets.get((int) (tick & this.mask));
+            for (int i = bucket.size(); i > 0; i--) {
+                var entry = bucket.poll();
+                if (entry.deadlineTick > nowTick) {
+                    bucket.offer(entry); // a later round
+                } else if (this.expire.test(entry.item)) {
+                    expired++;
+                }
+            }
+        }
+        this.currentTick = Math.max(this.currentTick, nowTick + 1);
+        return expired;
+    }
+
+    private int transferInbox() {
+        int expired = 0;
+        Entry<T> entry;
+        while ((entry = this.inbox.poll()) != null) {
+            if (entry.deadlineTick < this.currentTick) {
+                if (this.expire.test(entry.item)) { // already overdue on arrival
+                    expired++;
+                }
+            } else {
+                this.buckets.get((int) (entry.deadlineTick & this.mask)).offer(entry);
+            }
+        }
+        return expired;
+    }
+
+    private long tickOf(long nanos) {
+        return Math.max(0, nanos - this.startNanos) / this.tickNanos;
+    }
+
+    private record Entry<T>(T item, long deadlineTick) {
+    }
+}
@@ -0,0 +1,500 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Write-ahead journal of a restaurant, so its seats and waiting line survive a restart of the JVM.
+ *
+ * <p>Every change is appended as a fixed-size record to memory-mapped segment files.
+ * A writer only reserves a sequence number, so appending is lock-free, and its sequence number is written last,
+ * which makes it the commit marker of the record: replay stops at the first record which is not complete.
+ * <p>Any complete prefix of the journal is a state the restaurant could have been in: a departure is appended before its seats
+ * are freed, every other change right after it has happened, and replay tolerates the records of one group coming in either order.
+ * <p>The mapped pages outlive a crash of the JVM on their own, they are forced to the disk in batches by a background thread.
+ * <p>Snapshots never read the restaurant itself: the background thread folds the complete records into a copy of the state
+ * with the very replay of a restart, and writes that copy out periodically and whenever a segment fills up.
+ * The segments before it are deleted, so a restart reads one snapshot and a short tail.
+ * <p>Times are kept as wall-clock time, the monotonic nanos of the clock are meaningless in another JVM.
+ * Each restart starts a new epoch, and only the segments of the epoch of the snapshot are replayed.
+ */
+final class Journal implements AutoCloseable {
+
+    static final byte QUEUED = 1;
+    static final byte SEATED = 2;
+    static final byte LEFT = 3;
+    /**
+     * Taken out of the line without a seat at this restaurant: seated from the line, stolen, abandoned or expired.
+     */
+    static final byte UNQUEUED = 4;
+
+    private static final int RECORD = 32;
+    private static final int RECORDS_PER_SEGMENT = 1 << 16;
+    private static final long SEGMENT_MAGIC = 0x5245535453454731L;
+    private static final long SNAPSHOT_MAGIC = 0x524553545350304eL;
+    private static final long FORCE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SNAPSHOT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)-(\\d+)\\.log");
+    /**
+     * Writes the sequence number with release semantics, after the rest of the record.
+     */
+    private static final VarHandle SEQ = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    /**
+     * Shared by every journal of the JVM, for forcing and snapshots, so the I/O never delays the expiry of waiting groups.
+     */
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "restaurant-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final long epoch;
+    private final long originNanos;
+    private final long originWallNanos;
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private final Map<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+    private volatile Segment current;
+    private final ScheduledFuture<?> forcing;
+    private final ScheduledFuture<?> snapshots;
+    /**
+     * State up to {@code foldedSeq}, guarded by the monitor of the journal like the fields below.
+     */
+    private final Fold fold;
+    private long foldedSeq = 1;
+    private long forcedSegment;
+    /**
+     * Set by {@link #close()}, appends and the background work racing with it are dropped then.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Starts the epoch following the recovered one: the recovered state is snapshotted first,
+     * then the files of any other epoch are deleted.
+     */
+    Journal(Path directory, Recovery recovered, RestClock clock) {
+        this.directory = directory;
+        this.epoch = recovered.epoch() + 1;
+        this.originNanos = clock.nanos();
+        this.originWallNanos = wallNanos(clock.toDateTime(this.originNanos));
+        this.fold = Fold.of(recovered);
+        this.deleteSegments(segment -> segment.epoch() != recovered.epoch()); // left over by a restart which has failed
+        this.snapshot();
+        this.current = new Segment(0, this.segments.computeIfAbsent(0L, this::map));
+        this.forcing = SCHEDULER.scheduleWithFixedDelay(this::sync, FORCE_NANOS, FORCE_NANOS, TimeUnit.NANOSECONDS);
+        this.snapshots = SCHEDULER.scheduleWithFixedDelay(this::snapshotQuietly, SNAPSHOT_NANOS, SNAPSHOT_NANOS, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Thread-safe, called right after the change has happened, or right before it for a departure.
+     *
+     * @param slot table of a seated group, or -1
+     */
+    void append(byte type, ClientsGroup group, int slot) {
+        if (this.closed) {
+            return;
+        }
+        long seq = this.nextSeq.getAndIncrement();
+        var buffer = this.segment((seq - 1) / RECORDS_PER_SEGMENT);
+        int at = (int) ((seq - 1) % RECORDS_PER_SEGMENT + 1) * RECORD;
+        buffer.putLong(at + 8, group.arrivalNanos());
+        buffer.putInt(at + 16, slot);
+        buffer.put(at + 20, type);
+        buffer.put(at + 21, (byte) group.size());
+        buffer.putInt(at + 24, checksum(seq, group.arrivalNanos(), slot, type, group.size()));
+        SEQ.setRelease(buffer, at, seq);
+    }
+
+    /**
+     * Record 0 of a segment is its header, so the records of segment {@code i} are the sequence numbers
+     * from {@code i * RECORDS_PER_SEGMENT + 1}.
+     */
+    private MappedByteBuffer segment(long index) {
+        var current = this.current;
+        if (current.index() == index) {
+            return current.buffer();
+        }
+        var buffer = this.segments.computeIfAbsent(index, this::map);
+        if (index > current.index()) {
+            this.current = new Segment(index, buffer);
+            SCHEDULER.execute(() -> { // the next segment is mapped ahead, and the full one is covered by a snapshot
+                if (!this.closed) {
+                    this.segments.computeIfAbsent(index + 1, this::map);
+                    this.snapshotQuietly();
+                }
+            });
+        }
+        return buffer;
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (var channel = FileChannel.open(this.directory.resolve(segmentName(this.epoch, index)),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (RECORDS_PER_SEGMENT + 1) * RECORD);
+            buffer.putLong(0, SEGMENT_MAGIC);
+            buffer.putLong(8, this.epoch);
+            buffer.putLong(16, this.originNanos);
+            buffer.putLong(24, this.originWallNanos);
+            return buffer; // stays valid once the channel is closed
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Group commit: the segments written since the last round are forced together,
+     * a record is on the disk one round after it has been appended at the latest.
+     */
+    private synchronized void sync() {
+        if (this.closed) {
+            return;
+        }
+        this.catchUp();
+        this.force();
+    }
+
+    /**
+     * Folds the records appended since the last round, up to the first one still being written.
+     */
+    private void catchUp() {
+        while (this.foldedSeq < this.nextSeq.get()) {
+            var buffer = this.segments.get((this.foldedSeq - 1) / RECORDS_PER_SEGMENT);
+            if (buffer == null || !this.fold.apply(buffer, this.foldedSeq, this.originNanos, this.originWallNanos)) {
+                return;
+            }
+            this.foldedSeq++;
+        }
+    }
+
+    private void force() {
+        long last = this.current.index();
+        for (long index = this.forcedSegment; index <= last; index++) {
+            var buffer = this.segments.get(index);
+            if (buffer != null) {
+                buffer.force();
+            }
+        }
+        this.forcedSegment = last;
+    }
+
+    /**
+     * Writes the snapshot next to the old one and swaps it in atomically, then deletes the segments it covers.
+     */
+    synchronized void snapshot() {
+        this.catchUp();
+        long startSeq = this.foldedSeq;
+        var file = this.directory.resolve(SNAPSHOT);
+        var temp = this.directory.resolve(SNAPSHOT + ".tmp");
+        try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            var crc = new CRC32();
+            var out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)), crc));
+            out.writeLong(SNAPSHOT_MAGIC);
+            out.writeLong(this.epoch);
+            out.writeLong(startSeq);
+            this.fold.write(out);
+            long checksum = crc.getValue();
+            out.writeLong(checksum);
+            out.flush();
+            channel.force(true);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.deleteSegments(segment -> segment.epoch() != this.epoch || (segment.index() + 1) * RECORDS_PER_SEGMENT < startSeq);
+    }
+
+    /**
+     * A failed snapshot is reported without cancelling the next ones, the journal simply grows meanwhile.
+     */
+    private synchronized void snapshotQuietly() {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.snapshot();
+        } catch (RuntimeException e) {
+            Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+        }
+    }
+
+    private void deleteSegments(Predicate<SegmentName> condition) {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            for (var path : files.toList()) {
+                var matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    var segment = new SegmentName(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)));
+                    if (condition.test(segment)) {
+                        if (segment.epoch() == this.epoch) {
+                            this.segments.remove(segment.index()); // unmapped by the garbage collector
+                        }
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the background work after a last snapshot, the restaurant is recovered from it right away.
+     * <p>Closing twice does nothing.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.forcing.cancel(false);
+        this.snapshots.cancel(false);
+        this.snapshot();
+        this.segments.values().forEach(MappedByteBuffer::force);
+    }
+
+    /**
+     * Reads the latest snapshot and replays the journal after it, up to the first incomplete record.
+     *
+     * @return an empty restaurant if the directory holds no snapshot yet
+     */
+    static Recovery recover(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            Fold fold;
+            long epoch;
+            long seq;
+            try (var in = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(directory.resolve(SNAPSHOT))), new CRC32())) {
+                var data = new DataInputStream(in);
+                if (data.readLong() != SNAPSHOT_MAGIC) {
+                    throw new IllegalStateException("Not a snapshot of a restaurant: " + directory.resolve(SNAPSHOT));
+                }
+                epoch = data.readLong();
+                seq = data.readLong();
+                fold = Fold.read(data);
+                long checksum = in.getChecksum().getValue();
+                if (data.readLong() != checksum) {
+                    throw new IllegalStateException("Corrupt snapshot: " + directory.resolve(SNAPSHOT));
+                }
+            } catch (NoSuchFileException e) {
+                return new Recovery(0, List.of(), List.of());
+            }
+            replay(directory, epoch, seq, fold);
+            return fold.recovery(epoch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void replay(Path directory, long epoch, long seq, Fold fold) throws IOException {
+        while (true) {
+            long index = (seq - 1) / RECORDS_PER_SEGMENT;
+            var path = directory.resolve(segmentName(epoch, index));
+            if (!Files.exists(path)) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (buffer.capacity() < (RECORDS_PER_SEGMENT + 1) * RECORD || buffer.getLong(0) != SEGMENT_MAGIC || buffer.getLong(8) != epoch) {
+                return;
+            }
+            long originNanos = buffer.getLong(16);
+            long originWallNanos = buffer.getLong(24);
+            for (; (seq - 1) / RECORDS_PER_SEGMENT == index; seq++) {
+                if (!fold.apply(buffer, seq, originNanos, originWallNanos)) {
+                    return; // the tail which had not been written completely
+                }
+            }
+        }
+    }
+
+    private static String segmentName(long epoch, long index) {
+        return "journal-" + epoch + "-" + index + ".log";
+    }
+
+    private static int checksum(long seq, long arrivalNanos, int slot, byte type, int size) {
+        long hash = seq * 0x9E3779B97F4A7C15L ^ arrivalNanos * 0xC2B2AE3D27D4EB4FL ^ ((long) slot << 16 | (long) type << 8 | size);
+        return (int) (hash ^ hash >>> 32);
+    }
+
+    private static long wallNanos(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    private static LocalDateTime dateTime(long wallNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(wallNanos, 1_000_000_000L), (int) Math.floorMod(wallNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    /**
+     * @param epoch   of the snapshot, 0 if there was none
+     * @param waiting in the order of the line, with slot -1
+     */
+    record Recovery(long epoch, List<Recovered> seated, List<Recovered> waiting) {
+    }
+
+    /**
+     * A group as it was before the restart, its arrival is in wall-clock time for the clock of the new JVM.
+     */
+    record Recovered(int slot, int size, LocalDateTime arrivalTime) {
+    }
+
+    private record Key(int size, long wallNanos) {
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeByte(this.size);
+            out.writeLong(this.wallNanos);
+        }
+
+        private static Key read(DataInputStream in) throws IOException {
+            return new Key(in.readByte(), in.readLong());
+        }
+    }
+
+    /**
+     * Seats and waiting line as replayed from the journal.
+     * <p>The records of a group are appended by different threads, so they may come in any order:
+     * a departure or a removal from the line which comes first cancels the seat or the queueing which comes later.
+     * The early ones are kept by the snapshots too, the record they cancel may come after them.
+     */
+    private static final class Fold {
+        private final Map<Key, Integer> seated = new LinkedHashMap<>();
+        private final Set<Key> waiting = new LinkedHashSet<>();
+        private final Set<Key> leftEarly = new HashSet<>();
+        private final Set<Key> unqueuedEarly = new HashSet<>();
+
+        /**
+         * The early records of the previous epoch are dropped, the records they were waiting for are lost with the JVM.
+         */
+        private static Fold of(Recovery recovered) {
+            var fold = new Fold();
+            recovered.seated().forEach(group -> fold.seated.put(new Key(group.size(), wallNanos(group.arrivalTime())), group.slot()));
+            recovered.waiting().forEach(group -> fold.waiting.add(new Key(group.size(), wallNanos(group.arrivalTime()))));
+            return fold;
+        }
+
+        /**
+         * @return whether the record at this sequence number was complete
+         */
+        private boolean apply(MappedByteBuffer buffer, long seq, long originNanos, long originWallNanos) {
+            int at = (int) ((seq - 1) % RECORDS_PER_SEGMENT + 1) * RECORD;
+            if ((long) SEQ.getAcquire(buffer, at) != seq) {
+                return false;
+            }
+            long arrivalNanos = buffer.getLong(at + 8);
+            int slot = buffer.getInt(at + 16);
+            byte type = buffer.get(at + 20);
+            byte size = buffer.get(at + 21);
+            if (buffer.getInt(at + 24) != checksum(seq, arrivalNanos, slot, type, size)) {
+                return false;
+            }
+            var key = new Key(size, originWallNanos + (arrivalNanos - originNanos));
+            switch (type) {
+                case QUEUED -> {
+                    if (!this.unqueuedEarly.remove(key)) {
+                        this.waiting.add(key);
+                    }
+                }
+                case UNQUEUED -> {
+                    if (!this.waiting.remove(key)) {
+                        this.unqueuedEarly.add(key);
+                    }
+                }
+                case SEATED -> {
+                    if (!this.leftEarly.remove(key)) {
+                        this.seated.putIfAbsent(key, slot);
+                    }
+                }
+                case LEFT -> {
+                    if (this.seated.remove(key) == null) {
+                        this.leftEarly.add(key);
+                    }
+                }
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Recovery recovery(long epoch) {
+            var seated = new ArrayList<Recovered>();
+            this.seated.forEach((key, slot) -> seated.add(new Recovered(slot, key.size(), dateTime(key.wallNanos()))));
+            var waiting = this.waiting.stream().map(key -> new Recovered(-1, key.size(), dateTime(key.wallNanos()))).toList();
+            return new Recovery(epoch, seated, waiting);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.seated.size());
+            for (var entry : this.seated.entrySet()) {
+                out.writeInt(entry.getValue());
+                entry.getKey().write(out);
+            }
+            for (var keys : List.of(this.waiting, this.leftEarly, this.unqueuedEarly)) {
+                out.writeInt(keys.size());
+                for (var key : keys) {
+                    key.write(out);
+                }
+            }
+        }
+
+        private static Fold read(DataInputStream in) throws IOException {
+            var fold = new Fold();
+            for (int i = in.readInt(); i > 0; i--) {
+                int slot = in.readInt();
+                fold.seated.put(Key.read(in), slot);
+            }
+            for (var keys : List.of(fold.waiting, fold.leftEarly, fold.unqueuedEarly)) {
+                for (int i = in.readInt(); i > 0; i--) {
+                    keys.add(Key.read(in));
+                }
+            }
+            return fold;
+        }
+    }
+
+    private record Segment(long index, MappedByteBuffer buffer) {
+    }
+
+    private record SegmentName(long epoch, long index) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.restaurant;
+
+import com.restaurant.wait.ActionOnWait;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free engine: every table is an immutable {@link SeatData}, replaced as a whole by a CAS on its slot.
+ */
+final class LockFreeRestaurantManager extends RestaurantManager {
+
+    private final SlotChunks<AtomicReferenceArray<SeatData>> seats = new SlotChunks<>(AtomicReferenceArray::new);
+    private final SeatIndex seatIndex;
+    /**
+     * Reverse index from a seated group to its slot in {@code seats}.
+     * <p>An entry is published before the seating swap and validated against the slot on every read,
+     * so it is never trusted on its own.
+     */
+    private final Map<ClientsGroup, Integer> placements = new ConcurrentHashMap<>();
+
+    public LockFreeRestaurantManager(List<Table> tables, ActionOnWait actionOnWait, RestSettings settings) {
+        super(tables, actionOnWait, settings);
+        this.seatIndex = new SeatIndex(i -> {
+            var seatData = this.seatData(i);
+            return seatData.open() ? seatData.seatsLeft() : 0;
+        }, this::isHeld);
+        this.addSlots(0, tables);
+    }
+
+    private SeatData seatData(int index) {
+        return this.seats.chunk(index).get(SlotChunks.offset(index));
+    }
+
+    @Override
+    protected void addSlots(int first, List<Table> tables) {
+        this.seats.ensure(first + tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            this.seats.chunk(first + i).set(SlotChunks.offset(first + i), new SeatData(tables.get(i), new LinkedList<>(), tables.get(i).size(), true));
+        }
+        this.seatIndex.add(tables);
+    }
+
+    @Override
+    protected void setOpen(int index, boolean open) {
+        SeatData seatData;
+        do {
+            seatData = this.seatData(index);
+        } while (seatData.open() != open
+                && !this.updateSeatData(index, seatData, new SeatData(seatData.table(), seatData.clientsGroups(), seatData.seatsLeft(), open)));
+    }
+
+    @Override
+    protected boolean isOpen(int index) {
+        return this.seatData(index).open();
+    }
+
+    @Override
+    protected boolean isEmpty(int index) {
+        return this.seatData(index).clientsGroups().isEmpty();
+    }
+
+    @Override
+    protected Table table(int index) {
+        return this.seatData(index).table();
+    }
+
+    @Override
+    protected Table release(ClientsGroup group) {
+        var index = Optional.ofNullable(this.placements.get(group)).orElseThrow(IllegalStateException::new);
+        var freedUpSize = group.size();
+        SeatData seatData;
+        SeatData newSeatData;
+        List<ClientsGroup> newClientGroups;
+        do {
+            seatData = this.seatData(index);
+            if (!seatData.clientsGroups().contains(group)) {
+                throw new IllegalStateException();
+            }
+            newClientGroups = new LinkedList<>(seatData.clientsGroups());
+            newClientGroups.remove(group);
+            newSeatData = new SeatData(
+                    seatData.table(),
+                    newClientGroups,
+                    seatData.seatsLeft() + freedUpSize,
+                    seatData.open());
+        } while (!this.updateSeatData(index, seatData, newSeatData) && this.retried());
+        this.placements.remove(group, index);
+        return seatData.table();
+    }
+
+    /**
+     * The reverse index only tells where to look, the seat array is still the source of truth.
+     */
+    @Override
+    public Table lookup(ClientsGroup group) {
+        var index = this.placements.get(group);
+        if (index == null) {
+            return null;
+        }
+        var seatData = this.seatData(index);
+        return seatData.clientsGroups().contains(group) ? seatData.table() : null;
+    }
+
+    @Override
+    protected boolean trySeatAt(ClientsGroup group, int index, boolean booked) {
+        var oldSeatData = this.seatData(index); // getting again for fresh data
+        if (!this.canSeat(group, index, oldSeatData.open(), oldSeatData.seatsLeft(), booked)) { // checking whether the table is still available
+            return false;
+        }
+        var newClientGroups = new LinkedList<>(oldSeatData.clientsGroups()); // the old list may still be read by others
+        newClientGroups.add(group);
+        var newSeatData = new SeatData(
+                oldSeatData.table(),
+                newClientGroups,
+                oldSeatData.seatsLeft() - group.size(),
+                true);
+        this.placements.put(group, index);
+        if (this.updateSeatData(index, oldSeatData, newSeatData)) { // last point to check whether the table is still available
+            this.seatTaken(group, index);
+            return true;
+        }
+        this.placements.remove(group, index);
+        return false;
+    }
+
+    /**
+     * This operation is lock-free, atomic and visible.
+     * <p>Those guarantees are supported on hardware level.
+     * <p>The protocol is called CAS (compare and swap) on Intel chips and Store-Conditional on ARM chips.
+     * <p>Each successful swap re-syncs the slot in the capacity index.
+     */
+    private boolean updateSeatData(int index, SeatData oldSeatData, SeatData newSeatData) {
+        if (this.seats.chunk(index).compareAndSet(SlotChunks.offset(index), oldSeatData, newSeatData)) {
+            this.seatIndex.sync(index);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected int findFreeTable(ClientsGroup group) {
+        return this.seatIndex.findFree(group.size());
+    }
+
+    @Override
+    protected int findNonFreeTable(ClientsGroup group) {
+        return this.seatIndex.findPartial(group.size());
+    }
+
+    @Override
+    protected int largestFit() {
+        return this.seatIndex.largestFit();
+    }
+
+    @Override
+    protected SeatIndex seatIndex() {
+        return this.seatIndex;
+    }
+
+    @Override
+    protected List<OccupancySnapshot.TableView> tableViews() {
+        int tableCount = this.tableCount();
+        var views = new ArrayList<OccupancySnapshot.TableView>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            var seatData = this.seatData(i); // never modified once published
+            views.add(new OccupancySnapshot.TableView(seatData.table(), this.status(i, seatData.open()), seatData.seatsLeft(), seatData.clientsGroups()));
+        }
+        return views;
+    }
+
+}
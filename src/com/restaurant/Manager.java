@@ -1,14 +1,26 @@
 package com.restaurant;
 
 import java.time.Duration;
+import java.util.Collection;
 
-public interface Manager {
+public interface Manager extends AutoCloseable {
     // new client(s) show up
     void onArrive(ClientsGroup group);
 
     // client(s) leave, either served or simply abandoning the queue
     void onLeave(ClientsGroup group);
 
+    // a burst of arrivals, handled like one onArrive call per group in order:
+    // a failing group fails the call, the groups before it have arrived
+    default void onArriveAll(Collection<ClientsGroup> groups) {
+        groups.forEach(this::onArrive);
+    }
+
+    // a burst of departures, handled like one onLeave call per group in order
+    default void onLeaveAll(Collection<ClientsGroup> groups) {
+        groups.forEach(this::onLeave);
+    }
+
     // return table where a given client group is seated,
     // or null if it is still queueing or has already left
     Table lookup(ClientsGroup group);
@@ -19,6 +31,12 @@ public interface Manager {
 
     boolean abandonAllIf(Duration waitLimit);
 
+    // time a group of the given size would wait if it arrived now, in nanos:
+    // 0 if it would be seated right away, or -1 if there is no estimate (yet)
+    default long estimatedWaitNanos(int groupSize) {
+        return -1;
+    }
+
     // testing methods
     default int getQueueCount() {
         return -1;
@@ -27,4 +45,9 @@ public interface Manager {
     default int getSeatCount() {
         return -1;
     }
+
+    // stops the background work of the manager, nothing by default
+    @Override
+    default void close() {
+    }
 }
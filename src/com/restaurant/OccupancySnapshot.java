@@ -0,0 +1,66 @@
+package com.restaurant;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consistent point-in-time view of a restaurant, meant for dashboards: every change is either fully in it or not at all.
+ *
+ * @param version       grows with every change of the restaurant, so an unchanged version means an unchanged view
+ * @param tables        every table by its slot, in the order it was given to the restaurant, removed ones included
+ * @param placements    slot in {@code tables} of each seated group
+ * @param waitingBySize number of waiting groups, indexed by group size
+ */
+public record OccupancySnapshot(long version, List<TableView> tables, Map<ClientsGroup, Integer> placements, List<Integer> waitingBySize) {
+
+    public OccupancySnapshot {
+        tables = List.copyOf(tables);
+        placements = Map.copyOf(placements);
+        waitingBySize = List.copyOf(waitingBySize);
+    }
+
+    /**
+     * @return the table of the group, or null if it was not seated
+     */
+    public Table lookup(ClientsGroup group) {
+        var slot = this.placements.get(group);
+        return slot == null ? null : this.tables.get(slot).table();
+    }
+
+    public int queueLength() {
+        return this.waitingBySize.stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public int seatedSeats() {
+        return this.tables.stream().mapToInt(table -> table.table().size() - table.seatsLeft()).sum();
+    }
+
+    /**
+     * @return seats of the tables which have not been removed
+     */
+    public int totalSeats() {
+        return this.tables.stream().filter(table -> table.status() != TableStatus.REMOVED).mapToInt(table -> table.table().size()).sum();
+    }
+
+    /**
+     * @param groups seated at the table, a removed table still has the ones which have not left yet
+     */
+    public record TableView(Table table, TableStatus status, int seatsLeft, List<ClientsGroup> groups) {
+
+        public TableView {
+            groups = List.copyOf(groups);
+        }
+    }
+
+    public enum TableStatus {
+        OPEN,
+        /**
+         * Takes no more groups until it is enabled again.
+         */
+        DISABLED,
+        /**
+         * Takes no more groups for good, it is gone once empty.
+         */
+        REMOVED
+    }
+}
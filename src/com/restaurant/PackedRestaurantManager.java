@@ -0,0 +1,225 @@
+package com.restaurant;
+
+import com.restaurant.wait.ActionOnWait;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock-free engine whose seat swap allocates nothing.
+ *
+ * <p>The whole state of a table is packed into one {@code long} of {@code words}:
+ * seats left in the lowest 3 bits, then the group size of each of the 6 occupant slots in 3 bits each (0 for an empty slot),
+ * then a bit for a closed table.
+ * <p>An occupant slot of a table gives a compact handle ({@code table * 6 + slot}),
+ * under which the seated group itself is kept in {@code occupants}.
+ * <p>So taking and leaving a seat is a single CAS of a primitive word, no record and no list is copied.
+ * <p>Only the reverse index from a group to its handle, a {@link ConcurrentHashMap}, still allocates a node per seated group.
+ */
+final class PackedRestaurantManager extends RestaurantManager {
+
+    private static final int SLOTS = SeatIndex.MAX_SEATS;
+    private static final int BITS = 3;
+    private static final long MASK = (1L << BITS) - 1;
+    private static final long CLOSED = 1L << (BITS * (SLOTS + 1));
+
+    /**
+     * Copied on every change of the table set, which is rare.
+     */
+    private volatile List<Table> tables = List.of();
+    private final SlotChunks<AtomicLongArray> words = new SlotChunks<>(AtomicLongArray::new);
+    private final SlotChunks<AtomicReferenceArray<ClientsGroup>> occupants = new SlotChunks<>(tables -> new AtomicReferenceArray<>(tables * SLOTS));
+    private final SeatIndex seatIndex;
+    /**
+     * Reverse index from a seated group to its handle, published after the seating CAS.
+     */
+    private final Map<ClientsGroup, Integer> handles = new ConcurrentHashMap<>();
+    /**
+     * Pre-boxed handles, like the keys of {@link SeatIndex}, so the reverse index does not box on a seat.
+     */
+    private volatile Integer[] boxedHandles = new Integer[0];
+
+    public PackedRestaurantManager(List<Table> tables, ActionOnWait actionOnWait, RestSettings settings) {
+        super(tables, actionOnWait, settings);
+        this.seatIndex = new SeatIndex(i -> {
+            long word = this.word(i);
+            return (word & CLOSED) != 0 ? 0 : seatsLeft(word);
+        }, this::isHeld);
+        this.addSlots(0, tables);
+    }
+
+    private long word(int index) {
+        return this.words.chunk(index).get(SlotChunks.offset(index));
+    }
+
+    private AtomicReferenceArray<ClientsGroup> occupantsOf(int handle) {
+        return this.occupants.chunk(handle / SLOTS);
+    }
+
+    private static int offset(int handle) {
+        return SlotChunks.offset(handle / SLOTS) * SLOTS + handle % SLOTS;
+    }
+
+    @Override
+    protected void addSlots(int first, List<Table> tables) {
+        this.words.ensure(first + tables.size());
+        this.occupants.ensure(first + tables.size());
+        for (int i = 0; i < tables.size(); i++) {
+            this.words.chunk(first + i).set(SlotChunks.offset(first + i), tables.get(i).size());
+        }
+        var boxedHandles = Arrays.copyOf(this.boxedHandles, (first + tables.size()) * SLOTS);
+        for (int handle = first * SLOTS; handle < boxedHandles.length; handle++) {
+            boxedHandles[handle] = handle;
+        }
+        this.boxedHandles = boxedHandles;
+        var all = new ArrayList<>(this.tables);
+        all.addAll(tables);
+        this.tables = List.copyOf(all);
+        this.seatIndex.add(tables);
+    }
+
+    @Override
+    protected void setOpen(int index, boolean open) {
+        long word;
+        do {
+            word = this.word(index);
+        } while (((word & CLOSED) == 0) != open && !this.updateWord(index, word, word ^ CLOSED));
+    }
+
+    @Override
+    protected boolean isOpen(int index) {
+        return (this.word(index) & CLOSED) == 0;
+    }
+
+    @Override
+    protected boolean isEmpty(int index) {
+        return (this.word(index) & ~CLOSED) >>> BITS == 0;
+    }
+
+    @Override
+    protected Table table(int index) {
+        return this.tables.get(index);
+    }
+
+    private static int seatsLeft(long word) {
+        return (int) (word & MASK);
+    }
+
+    private static int occupant(long word, int slot) {
+        return (int) (word >>> (BITS * (slot + 1)) & MASK);
+    }
+
+    private static long withOccupant(long word, int slot, int size) {
+        int shift = BITS * (slot + 1);
+        return word & ~(MASK << shift) | ((long) size << shift);
+    }
+
+    @Override
+    protected Table release(ClientsGroup group) {
+        var boxed = this.handles.get(group);
+        if (boxed == null) {
+            throw new IllegalStateException();
+        }
+        int handle = boxed;
+        int index = handle / SLOTS;
+        int slot = handle % SLOTS;
+        long word;
+        do {
+            word = this.word(index);
+            if (occupant(word, slot) != group.size() || !group.equals(this.occupantsOf(handle).get(offset(handle)))) {
+                throw new IllegalStateException();
+            }
+        } while (!this.updateWord(index, word, withOccupant(word, slot, 0) + group.size()) && this.retried());
+        this.occupantsOf(handle).compareAndSet(offset(handle), group, null); // the slot may already be taken by the next group
+        this.handles.remove(group, boxed);
+        return this.tables.get(index);
+    }
+
+    @Override
+    public Table lookup(ClientsGroup group) {
+        var handle = this.handles.get(group);
+        if (handle == null || !group.equals(this.occupantsOf(handle).get(offset(handle)))) {
+            return null;
+        }
+        return this.tables.get(handle / SLOTS);
+    }
+
+    @Override
+    protected boolean trySeatAt(ClientsGroup group, int index, boolean booked) {
+        long word = this.word(index); // getting again for fresh data
+        if (!this.canSeat(group, index, (word & CLOSED) == 0, seatsLeft(word), booked)) { // checking whether the table is still available
+            return false;
+        }
+        int slot = 0;
+        while (occupant(word, slot) != 0) { // a table of n seats has at most n occupants, so there is always an empty slot
+            slot++;
+        }
+        if (!this.updateWord(index, word, withOccupant(word, slot, group.size()) - group.size())) {
+            return false;
+        }
+        int handle = index * SLOTS + slot;
+        this.occupantsOf(handle).set(offset(handle), group);
+        this.handles.put(group, this.boxedHandles[handle]);
+        this.seatTaken(group, index);
+        return true;
+    }
+
+    /**
+     * Same CAS protocol as {@link LockFreeRestaurantManager}, on a primitive word.
+     */
+    private boolean updateWord(int index, long oldWord, long newWord) {
+        if (this.words.chunk(index).compareAndSet(SlotChunks.offset(index), oldWord, newWord)) {
+            this.seatIndex.sync(index);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected int findFreeTable(ClientsGroup group) {
+        return this.seatIndex.findFree(group.size());
+    }
+
+    @Override
+    protected int findNonFreeTable(ClientsGroup group) {
+        return this.seatIndex.findPartial(group.size());
+    }
+
+    @Override
+    protected int largestFit() {
+        return this.seatIndex.largestFit();
+    }
+
+    @Override
+    protected SeatIndex seatIndex() {
+        return this.seatIndex;
+    }
+
+    /**
+     * An occupant still missing from its handle, right after the swap, is left out, such a read is not validated anyway.
+     */
+    @Override
+    protected List<OccupancySnapshot.TableView> tableViews() {
+        int tableCount = this.tableCount();
+        var tables = this.tables;
+        var views = new ArrayList<OccupancySnapshot.TableView>(tableCount);
+        for (int i = 0; i < tableCount; i++) {
+            long word = this.word(i);
+            var groups = new ArrayList<ClientsGroup>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                int handle = i * SLOTS + slot;
+                var group = occupant(word, slot) == 0 ? null : this.occupantsOf(handle).get(offset(handle));
+                if (group != null) {
+                    groups.add(group);
+                }
+            }
+            views.add(new OccupancySnapshot.TableView(tables.get(i), this.status(i, (word & CLOSED) == 0), seatsLeft(word), groups));
+        }
+        return views;
+    }
+}
@@ -0,0 +1,23 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hold of a table for a booked group, from {@link RestManager#reserve(int, LocalDateTime, java.time.Duration)}.
+ *
+ * @param slot       index of the held table, see {@link OccupancySnapshot#tables()}
+ * @param startNanos start of the hold on the timeline of the {@link RestClock} of the restaurant
+ * @param endNanos   end of the hold, exclusive; the table goes back to walk-ins then, whether the group has come or not
+ */
+public record Reservation(int slot, Table table, int groupSize, long startNanos, long endNanos) {
+
+    public LocalDateTime startTime(RestClock clock) {
+        return clock.toDateTime(this.startNanos);
+    }
+
+    public LocalDateTime endTime(RestClock clock) {
+        return clock.toDateTime(this.endNanos);
+    }
+}
@@ -0,0 +1,206 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Calendar of the holds of every table, an interval index per table.
+ *
+ * <p>The holds of a table never overlap, so ordered by start they are ordered by end as well:
+ * the hold starting last before a point in time is the only one which may still run at it.
+ * So every question about a table is a single O(log n) lookup in a skip list, however long the season.
+ * <p>The seating paths do not even pay that: the answer for a table stays the same until the next hold starts or ends,
+ * so it is kept along with that time and only looked up again then, or after a change of the holds of the table.
+ * <p>The calendars are read without locking, changes are serialized on the calendar, so two bookings never take the same time.
+ * Holds are kept in memory only, like the table set they are not journaled.
+ */
+final class Reservations {
+
+    private final RestClock clock;
+    /**
+     * A walk-in is expected to stay this long, so a table held sooner takes no walk-in anymore.
+     */
+    private final long walkInStayNanos;
+    /**
+     * Calendars of the slots, copied on growth like {@link SlotChunks}; a calendar never moves once published.
+     */
+    private volatile List<Calendar> calendars = List.of();
+    /**
+     * Holds of every table, ended ones included until they are swept; changed under the lock only.
+     */
+    private volatile int holdCount;
+
+    Reservations(RestClock clock, long walkInStayNanos) {
+        this.clock = clock;
+        this.walkInStayNanos = walkInStayNanos;
+    }
+
+    /**
+     * Read on the seating paths, constant-time and allocation-free until the answer changes;
+     * a table without holds costs no clock read either.
+     *
+     * @return whether a walk-in seated now would still be at the table when a hold starts, or a hold runs already
+     */
+    boolean isHeld(int slot) {
+        var calendar = this.calendar(slot);
+        if (calendar == null || calendar.holds.isEmpty()) {
+            return false;
+        }
+        long now = this.clock.nanos();
+        var verdict = calendar.verdict;
+        if (verdict == null || verdict.version != calendar.version || now < verdict.from || now >= verdict.until) {
+            verdict = this.judge(calendar, now);
+            calendar.verdict = verdict;
+        }
+        return verdict.held;
+    }
+
+    /**
+     * A running hold keeps the table until it ends, the next one takes it a walk-in stay before it starts.
+     */
+    private Verdict judge(Calendar calendar, long now) {
+        int version = calendar.version; // read first, so a change made meanwhile outdates the verdict
+        var last = calendar.holds.lowerEntry(now + this.walkInStayNanos);
+        if (last != null && last.getValue().endNanos() > now) {
+            return new Verdict(version, true, now, last.getValue().endNanos());
+        }
+        var next = calendar.holds.ceilingKey(now + this.walkInStayNanos);
+        return new Verdict(version, false, now, next == null ? Long.MAX_VALUE : next - this.walkInStayNanos + 1);
+    }
+
+    /**
+     * @return whether any table may be held, so the window packer has to look at the tables one by one
+     */
+    boolean hasHolds() {
+        return this.holdCount > 0;
+    }
+
+    /**
+     * @return start of the running or the next hold of the table, or {@code Long.MAX_VALUE} if it is free from now on
+     */
+    long freeUntil(int slot) {
+        var calendar = this.calendar(slot);
+        if (calendar == null) {
+            return Long.MAX_VALUE;
+        }
+        long now = this.clock.nanos();
+        var running = calendar.holds.floorEntry(now);
+        if (running != null && running.getValue().endNanos() > now) {
+            return running.getKey();
+        }
+        var next = calendar.holds.higherKey(now);
+        return next == null ? Long.MAX_VALUE : next;
+    }
+
+    /**
+     * @return whether no hold of the table overlaps the given time
+     */
+    private static boolean isFree(Calendar calendar, long startNanos, long endNanos) {
+        var before = calendar.holds.floorEntry(startNanos);
+        if (before != null && before.getValue().endNanos() > startNanos) {
+            return false;
+        }
+        var after = calendar.holds.higherKey(startNanos);
+        return after == null || after >= endNanos;
+    }
+
+    /**
+     * Holds the table unless that time is taken.
+     *
+     * @return the hold, or null if it overlaps another one
+     */
+    synchronized Reservation tryBook(int slot, Table table, int groupSize, long startNanos, long endNanos) {
+        this.ensure(slot + 1);
+        var calendar = this.calendars.get(slot);
+        if (!isFree(calendar, startNanos, endNanos)) {
+            return null;
+        }
+        var reservation = new Reservation(slot, table, groupSize, startNanos, endNanos);
+        calendar.holds.put(startNanos, reservation);
+        calendar.version++;
+        this.holdCount++;
+        return reservation;
+    }
+
+    /**
+     * @return whether the hold was still there
+     */
+    synchronized boolean release(Reservation reservation) {
+        var calendar = this.calendar(reservation.slot());
+        if (calendar == null || !calendar.holds.remove(reservation.startNanos(), reservation)) {
+            return false;
+        }
+        calendar.version++;
+        this.holdCount--;
+        return true;
+    }
+
+    boolean contains(Reservation reservation) {
+        var calendar = this.calendar(reservation.slot());
+        return calendar != null && reservation.equals(calendar.holds.get(reservation.startNanos()));
+    }
+
+    /**
+     * Drops the holds which have ended, so the calendars only keep the rest of the season.
+     * <p>An ended hold is ignored by every lookup already, it is only dropped here.
+     *
+     * @return whether any hold has ended since the last sweep, its table may take walk-ins again
+     */
+    synchronized boolean sweep() {
+        long now = this.clock.nanos();
+        boolean lapsed = false;
+        for (var calendar : this.calendars) {
+            Map.Entry<Long, Reservation> first;
+            while ((first = calendar.holds.firstEntry()) != null && first.getValue().endNanos() <= now) {
+                calendar.holds.remove(first.getKey());
+                calendar.version++;
+                this.holdCount--;
+                lapsed = true;
+            }
+        }
+        return lapsed;
+    }
+
+    private Calendar calendar(int slot) {
+        var calendars = this.calendars;
+        return slot < calendars.size() ? calendars.get(slot) : null;
+    }
+
+    private void ensure(int tableCount) {
+        var calendars = this.calendars;
+        if (calendars.size() < tableCount) {
+            var grown = new ArrayList<>(calendars);
+            while (grown.size() < tableCount) {
+                grown.add(new Calendar());
+            }
+            this.calendars = List.copyOf(grown);
+        }
+    }
+
+    private static final class Calendar {
+
+        /**
+         * Holds of the table by start.
+         */
+        private final ConcurrentSkipListMap<Long, Reservation> holds = new ConcurrentSkipListMap<>();
+        /**
+         * Bumped after every change of the holds, which are changed under the lock of the {@link Reservations} only.
+         */
+        private volatile int version;
+        /**
+         * Last answer of {@link Reservations#isHeld(int)}, a racy cache: whichever verdict wins, it is checked before use.
+         */
+        private volatile Verdict verdict;
+    }
+
+    /**
+     * @param from  first time the answer is valid at
+     * @param until first time it may be outdated at
+     */
+    private record Verdict(int version, boolean held, long from, long until) {
+    }
+}
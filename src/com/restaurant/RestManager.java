@@ -1,30 +1,49 @@
 package com.restaurant;
 
+import com.restaurant.exception.AbandonedException;
+import com.restaurant.metrics.MetricsSnapshot;
+import com.restaurant.metrics.RestMetrics;
 import com.restaurant.wait.ActionOnWait;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Comparator;
-import java.util.LinkedList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicMarkableReference;
-import java.util.concurrent.atomic.AtomicReferenceArray;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.ObjectName;
 
 public class RestManager implements Manager {
 
     /**
      * Bridge pattern used here
      */
-    private final Manager restaurantManager;
+    private final RestaurantManager restaurantManager;
+    private final List<ObjectName> mBeans = new CopyOnWriteArrayList<>();
 
     public RestManager(List<Table> tables, boolean lockFree, ActionOnWait actionOnWait) {
-        restaurantManager = lockFree ? new LockFreeRestaurantManager(tables, actionOnWait) : new BlockingRestaurantManager(tables, actionOnWait);
+        this(tables, lockFree, actionOnWait, RestSettings.defaults());
+    }
+
+    public RestManager(List<Table> tables, boolean lockFree, ActionOnWait actionOnWait, RestSettings settings) {
+        this.restaurantManager = engine(tables, lockFree, actionOnWait, settings);
+    }
+
+    static RestaurantManager engine(List<Table> tables, boolean lockFree, ActionOnWait actionOnWait, RestSettings settings) {
+        RestaurantManager engine;
+        if (!lockFree) {
+            engine = new BlockingRestaurantManager(tables, actionOnWait, settings);
+        } else if (settings.packedSeats()) {
+            engine = new PackedRestaurantManager(tables, actionOnWait, settings);
+        } else {
+            engine = new LockFreeRestaurantManager(tables, actionOnWait, settings);
+        }
+        if (settings.journal() != null) {
+            engine.openJournal(settings.journal(), tables.size()); // the engine has to be complete to take its groups back
+        }
+        return engine;
     }
 
     @Override
@@ -32,274 +51,195 @@ public class RestManager implements Manager {
         return this.restaurantManager.getQueueCount();
     }
 
+    /**
+     * Runs one dispatcher pass on the calling thread, meant for {@link RestSettings#manualDispatch()}.
+     *
+     * @return whether anybody has been seated
+     */
+    public boolean dispatch() {
+        return this.restaurantManager.dispatch();
+    }
+
     @Override
     public int getSeatCount() {
         return this.restaurantManager.getSeatCount();
     }
 
-    @Override
-    public void onArrive(ClientsGroup group) {
-        this.restaurantManager.onArrive(group);
+    /**
+     * Counters and histograms stay empty unless {@link RestSettings#metrics()} is set, the gauges are always filled in.
+     */
+    public MetricsSnapshot metrics() {
+        return this.restaurantManager.metrics();
     }
 
-    @Override
-    public void onLeave(ClientsGroup group) {
-        this.restaurantManager.onLeave(group);
+    /**
+     * Consistent view of the tables and the line, read without holding up any arrival, departure or dispatcher pass.
+     */
+    public OccupancySnapshot occupancy() {
+        return this.restaurantManager.occupancy();
     }
 
-    @Override
-    public Table lookup(ClientsGroup group) {
-        return this.restaurantManager.lookup(group);
+    /**
+     * Adds a table while the restaurant runs, the waiting groups may take it right away.
+     * <p>The table set is not journaled: a restarted restaurant has the tables given to its constructor.
+     *
+     * @return slot of the table, its index in {@link OccupancySnapshot#tables()}
+     */
+    public int addTable(Table table) {
+        return this.restaurantManager.addTable(table);
     }
 
-    @Override
-    public boolean abandonQueue(ClientsGroup group) {
-        return this.restaurantManager.abandonQueue(group);
+    /**
+     * Takes no more groups at the table, e.g. while it is cleaned; the groups seated at it stay until they leave.
+     *
+     * @param slot index of the table, in the order of the constructor and then of {@link #addTable(Table)}
+     */
+    public void disableTable(int slot) {
+        this.restaurantManager.setTableOpen(slot, false);
     }
 
-    @Override
-    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
-        return this.restaurantManager.abandonQueueIf(group, waitLimit);
+    public void enableTable(int slot) {
+        this.restaurantManager.setTableOpen(slot, true);
     }
 
-    @Override
-    public boolean abandonAllIf(Duration waitLimit) {
-        return this.restaurantManager.abandonAllIf(waitLimit);
+    /**
+     * Closes the table for good, it drains as the groups seated at it leave.
+     *
+     * @return completed once the last group has left the table
+     */
+    public CompletableFuture<Void> removeTable(int slot) {
+        return this.restaurantManager.removeTable(slot);
     }
 
-    abstract static class RestaurantManager implements Manager {
-        protected final Queue<ClientsGroup> clientGroupQueue = new ConcurrentLinkedQueue<>();
-        ExecutorService executor = Executors.newSingleThreadExecutor();
-        /**
-         * Strategy pattern used here.
-         *
-         * <p>Thread::onSpinWait (magical trick since Java 9) can be freely used here as a strategy, since it is suggested by JDK documentation and supported by latest Intel chips at least
-         * <p>Thread::yield can be the second option. It will free the CPU for other threads, but it is not guaranteed that the current thread will be scheduled again immediately
-         * Yielding will favor application's global progress over the concrete thread's local progress
-         * <p>Runnable can also be null, since it is used in a null-safe way
-         */
-        protected final ActionOnWait actionOnWait;
-
-        public RestaurantManager(ActionOnWait actionOnWait) {
-            this.actionOnWait = actionOnWait;
-        }
-
-        @Override
-        public int getQueueCount() {
-            return this.clientGroupQueue.size();
-        }
-
-        protected abstract Optional<?> findFreeTable(ClientsGroup group);
-
-        protected abstract Optional<?> findNonFreeTable(ClientsGroup group);
-
-        protected abstract boolean tryTakeSeat(ClientsGroup group);
-
-        protected record SeatData(Table table, List<ClientsGroup> clientsGroups, int seatsLeft) {
-        }
+    /**
+     * Holds a table for a booked group, walk-ins are kept off it from {@link RestSettings#walkInStay()} before the start.
+     * <p>The smallest table fitting the group is taken, like the seating paths fill tables.
+     * A disabled table can be booked, a removed one cannot.
+     *
+     * @param start on the clock of the restaurant, see {@link RestSettings#clock()}
+     * @return the hold, or null if every table fitting the group is held at that time
+     */
+    public Reservation reserve(int groupSize, LocalDateTime start, Duration length) {
+        long startNanos = this.restaurantManager.clock.toNanos(start);
+        return this.restaurantManager.reserve(groupSize, startNanos, startNanos + length.toNanos());
     }
 
+    /**
+     * @return whether the hold was still there, its table takes walk-ins again then
+     */
+    public boolean cancelReservation(Reservation reservation) {
+        return this.restaurantManager.cancelReservation(reservation);
+    }
 
-    static final class LockFreeRestaurantManager extends RestaurantManager {
-
-        private final AtomicReferenceArray<SeatData> seats;
-        private final AtomicMarkableReference<Runnable> loopingTask;
-
-        public LockFreeRestaurantManager(List<Table> tables, ActionOnWait actionOnWait) {
-            super(actionOnWait);
-            this.seats = new AtomicReferenceArray<>(tables.size());
-            for (int i = 0; i < tables.size(); i++) {
-                this.seats.set(i, new SeatData(tables.get(i), new LinkedList<>(), tables.get(i).size()));
-            }
-            this.loopingTask = new AtomicMarkableReference<>(null, false);
-        }
-
-        @Override
-        public int getSeatCount() {
-            return IntStream.range(0, this.seats.length()).map(i -> this.seats.get(i).table().size()-this.seats.get(i).seatsLeft).sum();
-        }
-
-        private void conditionallyInitializeEventLoop() {
-            var r = this.loopingTask.getReference();
-            if (this.loopingTask.compareAndSet(null, this::loopOverClientGroupQueue, false, true)) {
-                executor.submit(this.loopingTask.getReference()); // runs once and forever
-            }
-        }
-
-        @Override
-        public void onArrive(ClientsGroup group) {
-            this.conditionallyInitializeEventLoop();
-            boolean waitingQueueContainsSimilarCandidate = this.clientGroupQueue.stream().anyMatch(cg -> cg.size() <= group.size());
-            if (waitingQueueContainsSimilarCandidate) {
-                this.clientGroupQueue.offer(group);
-            } else if (!tryTakeSeat(group)) {
-                this.clientGroupQueue.offer(group);
-            }
-        }
-
-        @Override
-        public void onLeave(ClientsGroup group) {
-            var freedUpSize = group.size();
-            IndexedSeatData indexedSeatData;
-            SeatData newSeatData;
-            List<ClientsGroup> newClientGroups;
-            do {
-                indexedSeatData = this.loadSeatData(group);
-                newClientGroups = new LinkedList<>(indexedSeatData.seatData().clientsGroups());
-                newClientGroups.remove(group);
-                newSeatData = new SeatData(
-                        indexedSeatData.seatData().table(),
-                        newClientGroups,
-                        indexedSeatData.seatData().seatsLeft() + freedUpSize);
-            } while (!this.updateSeatData(indexedSeatData, newSeatData));
-
-        }
-
-        private IndexedSeatData loadSeatData(ClientsGroup group) {
-            return IntStream.range(0, this.seats.length())
-                    .mapToObj(i -> new IndexedSeatData(i, this.seats.get(i)))
-                    .filter(sd -> sd.seatData().clientsGroups().contains(group))
-                    .findAny()
-                    .orElseThrow(IllegalStateException::new);
-        }
-
-        @Override
-        public Table lookup(ClientsGroup group) {
-            return RestUtil.clientsGroupTableMap(this.seats).get(group);
-        }
-
-        @Override
-        public boolean abandonQueue(ClientsGroup group) {
-            return this.clientGroupQueue.remove(group);
-        }
-
-        @Override
-        public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
-            return this.clientGroupQueue.removeIf(cg -> cg.equals(group) && Duration.between(cg.arrivalTime(), LocalDateTime.now()).compareTo(waitLimit) > 0);
-        }
-
-        @Override
-        public boolean abandonAllIf(Duration waitLimit) {
-            return this.clientGroupQueue.removeIf(cg -> Duration.between(cg.arrivalTime(), LocalDateTime.now()).compareTo(waitLimit) > 0);
-        }
-
-        private void loopOverClientGroupQueue() {
-            while (true) {
-                while (this.clientGroupQueue.isEmpty()) {
-                    Optional.ofNullable(this.actionOnWait).ifPresent(ActionOnWait::doOnWait);
-                }
-                this.clientGroupQueue.removeIf(this::tryTakeSeat);
-            }
-        }
-
-        @Override
-        protected boolean tryTakeSeat(ClientsGroup group) {
-            while (this.findFreeTable(group).or(() -> this.findNonFreeTable(group)).isPresent()) { // no reference for having fresh data
-                Optional<IndexedSeatData> optionalIndexedSeatData = this.findFreeTable(group)
-                        .or(() -> this.findNonFreeTable(group)); // getting again for fresh data
-                if (optionalIndexedSeatData.isPresent()) { // checking whether the table is still available
-                    var indexedOldSeatData = optionalIndexedSeatData.get();
-                    var newClientGroups = indexedOldSeatData.seatData().clientsGroups();
-                    newClientGroups.add(group);
-                    var newSeatData = new SeatData(
-                            indexedOldSeatData.seatData().table(),
-                            newClientGroups,
-                            indexedOldSeatData.seatData().seatsLeft() - group.size());
-                    if (this.updateSeatData(optionalIndexedSeatData.get(), newSeatData)) { // last point to check whether the table is still available
-//                    clientGroupQueue.remove(group);
-                        return true;
-                    }
-                }
-            }
-            return false;
-        }
-
-        /**
-         * This operation is lock-free, atomic and visible.
-         * <p>Those guarantees are supported on hardware level.
-         * <p>The protocol is called CAS (compare and swap) on Intel chips and Store-Conditional on ARM chips.
-         */
-        private boolean updateSeatData(IndexedSeatData indexedSeatData, SeatData seatData) {
-            return this.seats.compareAndSet(indexedSeatData.index(), indexedSeatData.seatData(), seatData);
-        }
-
-        @Override
-        protected Optional<IndexedSeatData> findFreeTable(ClientsGroup group) {
-            return IntStream.range(0, this.seats.length())
-                    .mapToObj(i -> new IndexedSeatData(i, this.seats.get(i)))
-                    .sorted(Comparator.comparingInt(sd -> sd.seatData().table().size()))
-                    .filter(sd -> sd.seatData().table().size() == sd.seatData().seatsLeft())
-                    .filter(sd -> sd.seatData().seatsLeft() >= group.size())
-                    .findFirst();
-        }
-
-        @Override
-        protected Optional<IndexedSeatData> findNonFreeTable(ClientsGroup group) {
-            return IntStream.range(0, this.seats.length())
-                    .mapToObj(i -> new IndexedSeatData(i, seats.get(i)))
-                    .sorted(Comparator.comparingInt(sd -> sd.seatData().table().size()))
-                    .filter(sd -> sd.seatData().clientsGroups().size() > 0)
-                    .filter(sd -> 0 < sd.seatData().seatsLeft())
-                    .filter(sd -> sd.seatData().seatsLeft() >= group.size())
-                    .findFirst();
-        }
-
-        record IndexedSeatData(int index, SeatData seatData) {
-        }
-
+    /**
+     * Seats the booked group at its held table, which ends the hold.
+     *
+     * @return false if the table has no room for the group yet, e.g. a walk-in seated before the hold has not left;
+     * the hold stays, so the group can try again or arrive as a walk-in
+     * @throws IllegalStateException if the hold has been cancelled or has ended
+     */
+    public boolean seatReservation(Reservation reservation, ClientsGroup group) {
+        return this.restaurantManager.seatReservation(reservation, group);
+    }
 
+    /**
+     * @return start of the running or the next hold of the table, or null if it is not held from now on
+     */
+    public LocalDateTime freeUntil(int slot) {
+        long until = this.restaurantManager.freeUntil(slot);
+        return until == Long.MAX_VALUE ? null : this.restaurantManager.clock.toDateTime(until);
     }
 
-    static final class BlockingRestaurantManager extends RestaurantManager {
-        public BlockingRestaurantManager(List<Table> tables, ActionOnWait actionOnBusyWait) {
-            super(actionOnBusyWait);
-            throw new UnsupportedOperationException("Not implemented yet");
-        }
+    /**
+     * Exposes {@link #metrics()} over JMX.
+     *
+     * @return name to unregister the bean with, see {@link RestMetrics#unregister(ObjectName)}
+     */
+    public ObjectName registerMBean(String name) {
+        var objectName = RestMetrics.register(name, this::metrics);
+        this.mBeans.add(objectName);
+        return objectName;
+    }
 
-        @Override
-        public void onArrive(ClientsGroup group) {
+    /**
+     * Stops taking arrivals and waits until every waiting group is seated, which needs seated groups to keep leaving.
+     *
+     * @return whether the waiting line has emptied in time, the restaurant still has to be closed either way
+     */
+    public boolean drain(Duration timeout) {
+        return this.restaurantManager.drain(System.nanoTime() + timeout.toNanos());
+    }
 
-        }
+    /**
+     * Stops the dispatcher and the expiry of this restaurant, abandons the groups still waiting and unregisters its MBeans.
+     * <p>Seated groups can still leave and be looked up, new arrivals are refused.
+     */
+    @Override
+    public void close() {
+        this.restaurantManager.close();
+        this.mBeans.forEach(RestMetrics::unregister);
+        this.mBeans.clear();
+    }
 
-        @Override
-        public void onLeave(ClientsGroup group) {
+    @Override
+    public void onArrive(ClientsGroup group) {
+        this.restaurantManager.onArrive(group);
+    }
 
-        }
+    /**
+     * Asynchronous counterpart of {@link #onArrive(ClientsGroup)}, so nobody has to poll {@link #lookup(ClientsGroup)}.
+     * <p>The future is completed right on the thread which seats the group: the arriving one or the dispatcher.
+     * Dependent stages added with the non-async methods run there too, so they must be short.
+     * <p>It fails with a {@link TimeoutException} once the max wait is over, and with an {@link AbandonedException}
+     * when the group abandons the queue or the restaurant is closed.
+     * Cancelling it, or a timeout of its own (e.g. {@link CompletableFuture#orTimeout}), abandons the group if it still waits.
+     *
+     * @throws IllegalStateException if the group has already arrived this way and has not been seated yet
+     */
+    public CompletableFuture<Table> arrive(ClientsGroup group) {
+        return this.restaurantManager.arrive(group);
+    }
 
-        @Override
-        public Table lookup(ClientsGroup group) {
-            return null;
-        }
+    @Override
+    public void onLeave(ClientsGroup group) {
+        this.restaurantManager.onLeave(group);
+    }
 
-        @Override
-        public boolean abandonQueue(ClientsGroup group) {
-            return false;
-        }
+    @Override
+    public void onArriveAll(Collection<ClientsGroup> groups) {
+        this.restaurantManager.onArriveAll(groups);
+    }
 
-        @Override
-        public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
-            return false;
-        }
+    @Override
+    public void onLeaveAll(Collection<ClientsGroup> groups) {
+        this.restaurantManager.onLeaveAll(groups);
+    }
 
-        @Override
-        public boolean abandonAllIf(Duration waitLimit) {
-            return false;
-        }
+    @Override
+    public Table lookup(ClientsGroup group) {
+        return this.restaurantManager.lookup(group);
+    }
 
-        @Override
-        protected Optional<?> findFreeTable(ClientsGroup group) {
-            return null;
-        }
+    @Override
+    public boolean abandonQueue(ClientsGroup group) {
+        return this.restaurantManager.abandonQueue(group);
+    }
 
-        @Override
-        protected Optional<?> findNonFreeTable(ClientsGroup group) {
-            return null;
-        }
+    /**
+     * Constant-time and allocation-free, from the pace at which groups have been leaving lately, see {@link WaitEstimator}.
+     */
+    @Override
+    public long estimatedWaitNanos(int groupSize) {
+        return this.restaurantManager.estimatedWaitNanos(groupSize);
+    }
 
-        @Override
-        protected boolean tryTakeSeat(ClientsGroup group) {
-            return false;
-        }
+    @Override
+    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+        return this.restaurantManager.abandonQueueIf(group, waitLimit);
     }
 
+    @Override
+    public boolean abandonAllIf(Duration waitLimit) {
+        return this.restaurantManager.abandonAllIf(waitLimit);
+    }
 }
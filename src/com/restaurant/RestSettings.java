@@ -0,0 +1,151 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+import com.restaurant.policy.FifoSeating;
+import com.restaurant.policy.SeatingPolicy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Optional features of a {@link RestManager}, everything is switched off by {@link #defaults()}.
+ *
+ * @param maxWait        waiting groups are abandoned automatically after this long, or never if null
+ * @param onAbandon      called with every group abandoned automatically, one at a time and off the thread of the expiry scheduler
+ * @param clock          source of time for arrivals and wait limits, groups have to be created on the same clock;
+ *                       the expiry scheduler still looks at it once per tick of real time
+ * @param packedSeats    the lock-free mode keeps each table in a single primitive word, so seating does not allocate
+ * @param onSeat         called with every seated group, on the thread which has seated it (an arrival or the dispatcher)
+ * @param manualDispatch no dispatcher thread is started, the owner runs {@link RestManager#dispatch()} itself,
+ *                       e.g. a single-threaded simulation
+ * @param metrics        counters and latency histograms are recorded, see {@link RestManager#metrics()};
+ *                       the queue and seat gauges are kept regardless
+ * @param dispatchers    creates the dispatcher thread, started by the first arrival and stopped by {@link RestManager#close()};
+ *                       daemon platform threads by default, on Java 21 {@code Thread.ofVirtual().factory()} makes an idle restaurant
+ *                       cost no platform thread at all
+ * @param seatingPolicy  decides whom the dispatcher seats where, {@link FifoSeating} by default
+ * @param journal        directory of a write-ahead journal, the seats and the waiting line found in it are restored on creation,
+ *                       or no journal if null; one directory per restaurant, and the same tables in the same order across restarts
+ * @param walkInStay     how long a walk-in is expected to stay, a table held for a {@link Reservation} sooner takes no walk-in;
+ *                       90 minutes if null
+ */
+public record RestSettings(Duration maxWait, Consumer<ClientsGroup> onAbandon, RestClock clock, boolean packedSeats,
+                           Consumer<ClientsGroup> onSeat, boolean manualDispatch, boolean metrics,
+                           ThreadFactory dispatchers, SeatingPolicy seatingPolicy, Path journal, Duration walkInStay) {
+
+    private static final AtomicInteger DISPATCHERS = new AtomicInteger();
+    private static final Duration WALK_IN_STAY = Duration.ofMinutes(90);
+
+    public RestSettings {
+        if (maxWait != null && (maxWait.isNegative() || maxWait.isZero())) {
+            throw new IllegalArgumentException("Max wait must be positive");
+        }
+        onAbandon = onAbandon == null ? cg -> {} : onAbandon;
+        clock = clock == null ? RestClock.system() : clock;
+        onSeat = onSeat == null ? cg -> {} : onSeat;
+        dispatchers = dispatchers == null ? RestSettings::daemonDispatcher : dispatchers;
+        seatingPolicy = seatingPolicy == null ? new FifoSeating() : seatingPolicy;
+        if (walkInStay != null && walkInStay.isNegative()) {
+            throw new IllegalArgumentException("Walk-in stay must not be negative");
+        }
+        walkInStay = walkInStay == null ? WALK_IN_STAY : walkInStay;
+    }
+
+    public static RestSettings defaults() {
+        return new RestSettings(null, null, null, false, null, false, false, null, null, null, null);
+    }
+
+    public RestSettings withMaxWait(Duration maxWait, Consumer<ClientsGroup> onAbandon) {
+        return this.with(copy -> {
+            copy.maxWait = maxWait;
+            copy.onAbandon = onAbandon;
+        });
+    }
+
+    public RestSettings withClock(RestClock clock) {
+        return this.with(copy -> copy.clock = clock);
+    }
+
+    public RestSettings withPackedSeats(boolean packedSeats) {
+        return this.with(copy -> copy.packedSeats = packedSeats);
+    }
+
+    public RestSettings withOnSeat(Consumer<ClientsGroup> onSeat) {
+        return this.with(copy -> copy.onSeat = onSeat);
+    }
+
+    public RestSettings withManualDispatch(boolean manualDispatch) {
+        return this.with(copy -> copy.manualDispatch = manualDispatch);
+    }
+
+    public RestSettings withMetrics(boolean metrics) {
+        return this.with(copy -> copy.metrics = metrics);
+    }
+
+    public RestSettings withDispatchers(ThreadFactory dispatchers) {
+        return this.with(copy -> copy.dispatchers = dispatchers);
+    }
+
+    public RestSettings withSeatingPolicy(SeatingPolicy seatingPolicy) {
+        return this.with(copy -> copy.seatingPolicy = seatingPolicy);
+    }
+
+    public RestSettings withJournal(Path journal) {
+        return this.with(copy -> copy.journal = journal);
+    }
+
+    public RestSettings withWalkInStay(Duration walkInStay) {
+        return this.with(copy -> copy.walkInStay = walkInStay);
+    }
+
+    /**
+     * The only place besides {@link #defaults()} listing every component, a new setting is one more field of {@link Copy}.
+     */
+    private RestSettings with(Consumer<Copy> change) {
+        var copy = new Copy(this);
+        change.accept(copy);
+        return new RestSettings(copy.maxWait, copy.onAbandon, copy.clock, copy.packedSeats, copy.onSeat, copy.manualDispatch,
+                copy.metrics, copy.dispatchers, copy.seatingPolicy, copy.journal, copy.walkInStay);
+    }
+
+    private static Thread daemonDispatcher(Runnable dispatcher) {
+        var thread = new Thread(dispatcher, "restaurant-dispatcher-" + DISPATCHERS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Mutable copy of the components, changed by a {@code withX} method before it becomes settings again.
+     */
+    private static final class Copy {
+
+        private Duration maxWait;
+        private Consumer<ClientsGroup> onAbandon;
+        private RestClock clock;
+        private boolean packedSeats;
+        private Consumer<ClientsGroup> onSeat;
+        private boolean manualDispatch;
+        private boolean metrics;
+        private ThreadFactory dispatchers;
+        private SeatingPolicy seatingPolicy;
+        private Path journal;
+        private Duration walkInStay;
+
+        private Copy(RestSettings settings) {
+            this.maxWait = settings.maxWait;
+            this.onAbandon = settings.onAbandon;
+            this.clock = settings.clock;
+            this.packedSeats = settings.packedSeats;
+            this.onSeat = settings.onSeat;
+            this.manualDispatch = settings.manualDispatch;
+            this.metrics = settings.metrics;
+            this.dispatchers = settings.dispatchers;
+            this.seatingPolicy = settings.seatingPolicy;
+            this.journal = settings.journal;
+            this.walkInStay = settings.walkInStay;
+        }
+    }
+}
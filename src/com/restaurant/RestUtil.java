@@ -1,6 +1,8 @@
 package com.restaurant;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -12,7 +14,7 @@ public class RestUtil {
     public static final Set<Integer> SEATS = Set.of(2, 3, 4, 5, 6);
     public static final Set<Integer> CLIENT_GROUPS = Set.of(1, 2, 3, 4, 5, 6);
 
-    public static Map<ClientsGroup, Table> clientsGroupTableMap(AtomicReferenceArray<RestManager.RestaurantManager.SeatData> seats) {
+    public static Map<ClientsGroup, Table> clientsGroupTableMap(AtomicReferenceArray<RestaurantManager.SeatData> seats) {
         record ClientGroupToTable(ClientsGroup clientsGroup, Table table) {
         }
         return IntStream.range(0, seats.length())
@@ -25,5 +27,18 @@ public class RestUtil {
                 .collect(Collectors.toMap(ClientGroupToTable::clientsGroup, ClientGroupToTable::table, (t1, t2) -> t1, HashMap::new));
     }
 
-}
+    /**
+     * @param layout e.g. {@code 2x10,4x8,6x2}: ten tables of 2, eight tables of 4, two tables of 6
+     */
+    public static List<Table> parseLayout(String layout) {
+        var tables = new ArrayList<Table>();
+        for (var part : layout.split(",")) {
+            var sizeAndCount = part.strip().split("x");
+            for (int i = 0; i < Integer.parseInt(sizeAndCount[1]); i++) {
+                tables.add(new Table(Integer.parseInt(sizeAndCount[0])));
+            }
+        }
+        return tables;
+    }
 
+}
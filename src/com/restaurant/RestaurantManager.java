@@ -0,0 +1,1028 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+import com.restaurant.exception.AbandonedException;
+import com.restaurant.exception.ClientNumberException;
+import com.restaurant.metrics.Counter;
+import com.restaurant.metrics.MetricsSnapshot;
+import com.restaurant.metrics.RestMetrics;
+import com.restaurant.policy.SeatingPolicy;
+import com.restaurant.wait.ActionOnWait;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+abstract class RestaurantManager implements Manager {
+    private static final int EXPIRY_WHEEL_SIZE = 2048;
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    /**
+     * Shared by every restaurant of the JVM, each one only schedules its own wheel on it.
+     * <p>The wheels only take the expired groups out of their lines, whatever runs code of the owner is handed to {@link #EXPIRY_CALLBACKS}.
+     */
+    private static final ScheduledExecutorService EXPIRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "restaurant-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Runs the abandon callbacks and the failed futures of the expired groups, so a slow one holds up no wheel.
+     * <p>Threads are only added while some restaurant is still busy with its callbacks.
+     */
+    private static final ExecutorService EXPIRY_CALLBACKS = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "restaurant-expired");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int READ_SPINS = 64;
+    /**
+     * Brackets every change of the seats and of the line, see {@link #occupancy()}.
+     */
+    protected final SeqLock changes = new SeqLock();
+    protected final WaitingLine waitingLine = new WaitingLine(this.changes);
+    private final ThreadFactory dispatchers;
+    private final AtomicReference<Thread> dispatcher = new AtomicReference<>();
+    /**
+     * Strategy pattern used here.
+     *
+     * <p>Thread::onSpinWait (magical trick since Java 9) can be freely used here as a strategy, since it is suggested by JDK documentation and supported by latest Intel chips at least
+     * <p>Thread::yield can be the second option. It will free the CPU for other threads, but it is not guaranteed that the current thread will be scheduled again immediately
+     * Yielding will favor application's global progress over the concrete thread's local progress
+     * <p>Parking (plain or after spinning and yielding) is event-driven: producers signal the strategy, so an idle dispatcher costs no CPU
+     * <p>Runnable can also be null, since it is used in a null-safe way
+     */
+    protected final ActionOnWait actionOnWait;
+    /**
+     * Evicts waiting groups after the max wait, null if there is no max wait.
+     */
+    private final ExpiryWheel<WaitingLine.Waiting> expiryWheel;
+    private final ScheduledFuture<?> expiryTask;
+    private final long maxWaitNanos;
+    private final Consumer<ClientsGroup> onAbandon;
+    /**
+     * Callbacks of the expired groups, run one at a time and in order by a single task at most.
+     */
+    private final Queue<Runnable> expired = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean notifyingExpired = new AtomicBoolean();
+    private final Consumer<ClientsGroup> onSeat;
+    private final boolean manualDispatch;
+    protected final RestClock clock;
+    protected final RestMetrics metrics;
+    /**
+     * Strategy pattern used here as well, see {@link SeatingPolicy}.
+     */
+    private final SeatingPolicy seatingPolicy;
+    /**
+     * Table lookup of a single group, chosen once by the policy.
+     */
+    private final ToIntFunction<ClientsGroup> findTable;
+    /**
+     * A bigger group cannot be seated now, so it is kept out of the policy window, where it would starve everybody.
+     */
+    private volatile int largestTable;
+    /**
+     * Striped, so the seat gauge costs the seating paths no shared write.
+     */
+    private final LongAdder seatedSeats = new LongAdder();
+    private final WaitEstimator waitEstimator;
+    /**
+     * Bookings of the tables, whose holds every seat lookup skips.
+     */
+    private final Reservations reservations;
+    /**
+     * Wakes the dispatcher up as holds end, scheduled by the first booking.
+     */
+    private volatile ScheduledFuture<?> holdSweep;
+    private final AtomicBoolean holdSweepStarted = new AtomicBoolean();
+    private volatile int totalSeats;
+    /**
+     * Slots of the table set, which only grows: a removed table keeps its slot, so slots never change.
+     * <p>Changes of the table set are serialized on {@code tableSet}, the seating paths never wait for them.
+     */
+    private volatile int tableCount;
+    private final Object tableSet = new Object();
+    /**
+     * Every removed table, with its future completed once it is empty.
+     */
+    private final Map<Integer, CompletableFuture<Void>> removed = new ConcurrentHashMap<>();
+    private final Map<Integer, CompletableFuture<Void>> draining = new ConcurrentHashMap<>();
+    /**
+     * Other shards of a {@link ShardedRestManager}, whose waiting groups this one seats when it has nothing of its own to do.
+     */
+    private List<RestaurantManager> victims = List.of();
+    private volatile boolean accepting = true;
+    /**
+     * Futures of the groups which have arrived through {@link #arrive(ClientsGroup)} and are still waiting.
+     * <p>A stolen group is completed by the thief in the map of this shard, which is its home.
+     */
+    private final Map<ClientsGroup, CompletableFuture<Table>> pending = new ConcurrentHashMap<>();
+    /**
+     * Read by the dispatcher on every round, it finishes its current pass and returns.
+     */
+    protected volatile boolean closed;
+    /**
+     * Null without {@link RestSettings#journal()}, set once right after construction and cleared again by {@link #close()}.
+     */
+    private volatile Journal journal;
+
+    public RestaurantManager(List<Table> tables, ActionOnWait actionOnWait, RestSettings settings) {
+        this.actionOnWait = actionOnWait;
+        this.totalSeats = tables.stream().mapToInt(Table::size).sum();
+        this.tableCount = tables.size();
+        this.metrics = settings.metrics() ? RestMetrics.enabled() : RestMetrics.disabled();
+        this.dispatchers = settings.dispatchers();
+        this.onAbandon = settings.onAbandon();
+        this.onSeat = settings.onSeat();
+        this.manualDispatch = settings.manualDispatch();
+        this.clock = settings.clock();
+        this.waitEstimator = new WaitEstimator(this.clock.nanos());
+        this.reservations = new Reservations(this.clock, settings.walkInStay().toNanos());
+        this.seatingPolicy = settings.seatingPolicy();
+        this.findTable = this.seatingPolicy.bestFitTables()
+                ? group -> this.seatIndex().findBestFit(group.size())
+                : group -> {
+                    int index = this.findFreeTable(group);
+                    return index >= 0 ? index : this.findNonFreeTable(group);
+                };
+        this.largestTable = tables.stream().mapToInt(Table::size).max().orElse(0);
+        if (settings.maxWait() == null) {
+            this.expiryWheel = null;
+            this.expiryTask = null;
+            this.maxWaitNanos = Long.MAX_VALUE;
+        } else {
+            this.maxWaitNanos = settings.maxWait().toNanos();
+            // one rotation covers twice the max wait, so a deadline is visited exactly once
+            long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), this.maxWaitNanos / (EXPIRY_WHEEL_SIZE / 2));
+            this.expiryWheel = new ExpiryWheel<>(tickNanos, EXPIRY_WHEEL_SIZE, this.clock.nanos(), this::expire);
+            this.expiryTask = EXPIRY_SCHEDULER.scheduleAtFixedRate(() -> this.expiryWheel.advance(this.clock.nanos()), tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public int getQueueCount() {
+        return this.waitingLine.size();
+    }
+
+    @Override
+    public int getSeatCount() {
+        return (int) this.seatedSeats.sum();
+    }
+
+    int totalSeats() {
+        return this.totalSeats;
+    }
+
+    /**
+     * A group waits behind every waiting group of its size or smaller, until the tables big enough for it
+     * have freed the seats of all of them and its own.
+     */
+    @Override
+    public long estimatedWaitNanos(int groupSize) {
+        checkGroupSize(groupSize);
+        int seatsAhead = this.waitingLine.seatsWaitingUpTo(groupSize);
+        return estimatedWaitNanos(groupSize, seatsAhead, seatsAhead == 0 && this.largestFit() >= groupSize, this.freeingRate(groupSize));
+    }
+
+    /**
+     * @param fits        whether the group would be seated right away
+     * @param freeingRate seats freed per nano at the tables big enough for the group
+     */
+    static long estimatedWaitNanos(int groupSize, int seatsAhead, boolean fits, double freeingRate) {
+        if (fits) {
+            return 0;
+        }
+        return freeingRate > 0 ? (long) ((seatsAhead + groupSize) / freeingRate) : -1;
+    }
+
+    static void checkGroupSize(int groupSize) {
+        if (!RestUtil.CLIENT_GROUPS.contains(groupSize)) {
+            throw new ClientNumberException("Invalid number of clients");
+        }
+    }
+
+    double freeingRate(int groupSize) {
+        return this.waitEstimator.freeingRate(groupSize);
+    }
+
+    protected int tableCount() {
+        return this.tableCount;
+    }
+
+    int addTable(Table table) {
+        int index;
+        synchronized (this.tableSet) {
+            index = this.tableCount;
+            if (index == SeatIndex.MAX_TABLES) {
+                throw new IllegalStateException("Too many tables");
+            }
+            this.changes.begin();
+            this.addSlots(index, List.of(table));
+            this.tableCount = index + 1;
+            this.totalSeats += table.size();
+            this.changes.end(true);
+            this.largestTable = this.largestOpenTable();
+        }
+        this.signalDispatcher();
+        return index;
+    }
+
+    void setTableOpen(int index, boolean open) {
+        synchronized (this.tableSet) {
+            this.checkTable(index);
+            if (this.removed.containsKey(index)) {
+                throw new IllegalStateException("Table has been removed: " + index);
+            }
+            this.changes.begin();
+            this.setOpen(index, open);
+            this.changes.end(true);
+            this.largestTable = this.largestOpenTable();
+        }
+        if (open) {
+            this.signalDispatcher();
+        }
+    }
+
+    /**
+     * Removing a table again returns the same future.
+     */
+    CompletableFuture<Void> removeTable(int index) {
+        CompletableFuture<Void> drained;
+        synchronized (this.tableSet) {
+            this.checkTable(index);
+            drained = this.removed.get(index);
+            if (drained != null) {
+                return drained;
+            }
+            drained = new CompletableFuture<>();
+            this.changes.begin();
+            this.setOpen(index, false);
+            this.removed.put(index, drained);
+            this.totalSeats -= this.table(index).size();
+            this.changes.end(true);
+            this.largestTable = this.largestOpenTable();
+            this.draining.put(index, drained);
+        }
+        this.completeDrained();
+        return drained;
+    }
+
+    /**
+     * Tables are tried from the smallest fitting one, each is a single lookup in its calendar.
+     */
+    Reservation reserve(int groupSize, long startNanos, long endNanos) {
+        checkGroupSize(groupSize);
+        if (endNanos <= startNanos) {
+            throw new IllegalArgumentException("Reservation must end after it starts");
+        }
+        if (endNanos <= this.clock.nanos()) {
+            throw new IllegalArgumentException("Reservation is over already");
+        }
+        if (this.closed) {
+            throw new IllegalStateException("Restaurant is closed");
+        }
+        this.startHoldSweep();
+        int tableCount = this.tableCount;
+        for (int size = groupSize; size <= SeatIndex.MAX_SEATS; size++) {
+            for (int index = 0; index < tableCount; index++) {
+                var table = this.table(index);
+                if (table.size() == size && !this.removed.containsKey(index)) {
+                    var reservation = this.reservations.tryBook(index, table, groupSize, startNanos, endNanos);
+                    if (reservation != null) {
+                        return reservation;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    boolean cancelReservation(Reservation reservation) {
+        if (!this.reservations.release(reservation)) {
+            return false;
+        }
+        this.signalDispatcher();
+        return true;
+    }
+
+    /**
+     * The hold is what has kept the table free for the group, so the table is taken without looking at it.
+     * <p>It is released only once the group is seated, so no walk-in takes the table in between.
+     */
+    boolean seatReservation(Reservation reservation, ClientsGroup group) {
+        if (!this.accepting) {
+            throw new IllegalStateException("Restaurant is closed");
+        }
+        if (group.size() > reservation.table().size()) {
+            throw new IllegalArgumentException("Group does not fit the held table");
+        }
+        if (!this.reservations.contains(reservation)) {
+            throw new IllegalStateException("Reservation is not held: " + reservation);
+        }
+        var tried = new AtomicBoolean();
+        if (!this.takeSeat(group, cg -> tried.getAndSet(true) ? -1 : reservation.slot(), true)) {
+            return false;
+        }
+        this.reservations.release(reservation);
+        this.metrics.count(Counter.ARRIVED);
+        this.metrics.count(Counter.SEATED_ON_ARRIVAL);
+        this.seated(group, this);
+        this.signalDispatcher(); // seats left at the table go to the line
+        return true;
+    }
+
+    long freeUntil(int index) {
+        this.checkTable(index);
+        return this.reservations.freeUntil(index);
+    }
+
+    protected boolean isHeld(int index) {
+        return this.reservations.isHeld(index);
+    }
+
+    /**
+     * An ended hold frees its table without any event, so the holds are swept once per second of real time.
+     */
+    private void startHoldSweep() {
+        if (!this.holdSweepStarted.get() && this.holdSweepStarted.compareAndSet(false, true)) {
+            long tickNanos = TimeUnit.SECONDS.toNanos(1);
+            this.holdSweep = EXPIRY_SCHEDULER.scheduleAtFixedRate(() -> {
+                if (this.reservations.sweep()) {
+                    this.signalDispatcher();
+                }
+            }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+            if (this.closed) {
+                this.holdSweep.cancel(false); // closed meanwhile
+            }
+        }
+    }
+
+    private void checkTable(int index) {
+        if (index < 0 || index >= this.tableCount) {
+            throw new IllegalArgumentException("No such table: " + index);
+        }
+    }
+
+    private int largestOpenTable() {
+        int largest = 0;
+        for (int index = 0; index < this.tableCount; index++) {
+            if (this.isOpen(index)) {
+                largest = Math.max(largest, this.table(index).size());
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * A removed table takes nobody anymore, so once it is empty it stays empty.
+     */
+    private void completeDrained() {
+        this.draining.forEach((index, drained) -> {
+            if (this.isEmpty(index) && this.draining.remove(index, drained)) {
+                drained.complete(null);
+            }
+        });
+    }
+
+    protected OccupancySnapshot.TableStatus status(int index, boolean open) {
+        if (open) {
+            return OccupancySnapshot.TableStatus.OPEN;
+        }
+        return this.removed.containsKey(index) ? OccupancySnapshot.TableStatus.REMOVED : OccupancySnapshot.TableStatus.DISABLED;
+    }
+
+    void stealFrom(List<RestaurantManager> victims) {
+        this.victims = List.copyOf(victims);
+    }
+
+    MetricsSnapshot metrics() {
+        return this.metrics.snapshot(this.getQueueCount(), this.getSeatCount(), this.totalSeats);
+    }
+
+    /**
+     * Optimistic read: the tables and the line are read until no change has begun meanwhile.
+     * <p>Writers never wait for it, a read only retries, spinning at first and then yielding to the writer in progress.
+     */
+    OccupancySnapshot occupancy() {
+        var waiting = new int[WaitingLine.MAX_GROUP + 1];
+        for (int attempt = 0; ; attempt++) {
+            long version = this.changes.readBegin();
+            if (version >= 0) {
+                var tables = this.tableViews();
+                this.waitingLine.counts(waiting);
+                if (this.changes.validate(version)) {
+                    var placements = new HashMap<ClientsGroup, Integer>();
+                    for (int slot = 0; slot < tables.size(); slot++) {
+                        for (var group : tables.get(slot).groups()) {
+                            placements.put(group, slot);
+                        }
+                    }
+                    return new OccupancySnapshot(version, tables, placements, Arrays.stream(waiting).boxed().toList());
+                }
+            }
+            if (attempt < READ_SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Puts the groups of the journal back at their tables and in the line, then starts a new epoch of it.
+     * <p>The groups come back with their arrival in wall-clock time, see {@link ClientsGroup#ClientsGroup(int, LocalDateTime)}.
+     *
+     * @throws IllegalStateException if the journal does not fit the tables
+     */
+    void openJournal(Path directory, int tableCount) {
+        var recovery = Journal.recover(directory);
+        for (var seated : recovery.seated()) {
+            var group = new ClientsGroup(seated.size(), this.clock.toNanos(seated.arrivalTime()));
+            var tried = new AtomicBoolean();
+            if (seated.slot() >= tableCount || !this.takeSeat(group, cg -> tried.getAndSet(true) ? -1 : seated.slot(), true)) {
+                throw new IllegalStateException("Journal does not fit the tables: " + directory);
+            }
+        }
+        recovery.waiting().forEach(waiting -> this.enqueue(new ClientsGroup(waiting.size(), this.clock.toNanos(waiting.arrivalTime()))));
+        this.journal = new Journal(directory, recovery, this.clock);
+        if (!recovery.waiting().isEmpty()) {
+            this.conditionallyInitializeEventLoop();
+            this.signalDispatcher();
+        }
+    }
+
+    private void journal(byte type, ClientsGroup group, int slot) {
+        var journal = this.journal;
+        if (journal != null) {
+            journal.append(type, group, slot);
+        }
+    }
+
+    protected void conditionallyInitializeEventLoop() {
+        if (!this.manualDispatch && this.dispatcher.get() == null) {
+            var thread = this.dispatchers.newThread(this::loopOverClientGroupQueue);
+            if (this.dispatcher.compareAndSet(null, thread)) {
+                thread.start(); // runs once, until the restaurant is closed
+            }
+        }
+    }
+
+    @Override
+    public void onArrive(ClientsGroup group) {
+        if (this.admit(group, true)) {
+            this.signalDispatcher();
+        }
+    }
+
+    /**
+     * Group commit of arrivals: each one is handled exactly like a single call, in order,
+     * but the capacity index is walked once for the whole burst and the dispatcher is woken up once.
+     * <p>A group bigger than the current fit bound is queued without a seat search. The bound only shrinks during the burst,
+     * as a queued group makes every bigger one queue behind it anyway.
+     */
+    @Override
+    public void onArriveAll(Collection<ClientsGroup> groups) {
+        int fit = this.largestFit();
+        boolean queued = false;
+        for (var group : groups) {
+            boolean mayFit = group.size() <= fit;
+            if (this.admit(group, mayFit)) {
+                queued = true;
+                if (mayFit) {
+                    fit = group.size() - 1;
+                }
+            }
+        }
+        if (queued) {
+            this.signalDispatcher();
+        }
+    }
+
+    /**
+     * Seats or queues the group without waking the dispatcher.
+     *
+     * @param mayFit false if the group is known not to fit, so no seat is searched for
+     * @return whether the group has been queued
+     * @throws IllegalStateException if an equal group is still seated or waiting, see {@link ClientsGroup}
+     */
+    boolean admit(ClientsGroup group, boolean mayFit) {
+        if (!this.accepting) {
+            throw new IllegalStateException("Restaurant is closed");
+        }
+        if (this.holds(group)) {
+            throw new IllegalStateException("Group has already arrived");
+        }
+        this.conditionallyInitializeEventLoop();
+        this.metrics.count(Counter.ARRIVED);
+        boolean waitingQueueContainsSimilarCandidate = this.waitingLine.hasWaitingUpTo(group.size()) || this.waitingLine.isStarving();
+        if (!mayFit || waitingQueueContainsSimilarCandidate || !tryTakeSeat(group)) {
+            this.enqueue(group);
+            return true;
+        }
+        this.metrics.count(Counter.SEATED_ON_ARRIVAL);
+        this.seated(group, this);
+        return false;
+    }
+
+    /**
+     * @return whether the group is seated or waiting here
+     */
+    boolean holds(ClientsGroup group) {
+        return this.lookup(group) != null || this.waitingLine.contains(group);
+    }
+
+    @Override
+    public void onLeave(ClientsGroup group) {
+        this.leave(group);
+        this.seatsFreed(group.size(), 1);
+    }
+
+    /**
+     * The departure is journaled before the seats are freed, so it always comes before the seat of whoever takes them.
+     */
+    private void leave(ClientsGroup group) {
+        var journal = this.journal;
+        if (journal != null && this.lookup(group) != null) {
+            journal.append(Journal.LEFT, group, -1);
+        }
+        Table left = null;
+        this.changes.begin();
+        try {
+            left = this.release(group);
+        } finally {
+            this.changes.end(left != null);
+        }
+        this.waitEstimator.departed(group, left, this.clock.nanos());
+        if (!this.draining.isEmpty()) {
+            this.completeDrained();
+        }
+    }
+
+    /**
+     * Frees every table first and wakes the dispatcher up once, so it seats the waiting groups in a single pass.
+     * <p>A group which is not seated fails the call like {@link #onLeave(ClientsGroup)}, the groups before it have left.
+     */
+    @Override
+    public void onLeaveAll(Collection<ClientsGroup> groups) {
+        int seats = 0;
+        int left = 0;
+        try {
+            for (var group : groups) {
+                this.leave(group);
+                seats += group.size();
+                left++;
+            }
+        } finally {
+            if (left > 0) {
+                this.seatsFreed(seats, left);
+            }
+        }
+    }
+
+    CompletableFuture<Table> arrive(ClientsGroup group) {
+        var future = new CompletableFuture<Table>();
+        if (this.pending.putIfAbsent(group, future) != null) {
+            throw new IllegalStateException("Group has already arrived");
+        }
+        future.whenComplete((table, e) -> {
+            if (e != null && this.pending.remove(group, future)) { // completed from outside, e.g. cancelled
+                this.abandonQueue(group);
+            }
+        });
+        try {
+            this.onArrive(group);
+        } catch (RuntimeException e) {
+            this.pending.remove(group, future);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * @param home shard of the waiting line the group comes from, which holds its future
+     */
+    private void seated(ClientsGroup group, RestaurantManager home) {
+        var future = home.pending.remove(group);
+        if (future != null) {
+            future.complete(this.lookup(group));
+        }
+        this.onSeat.accept(group);
+    }
+
+    private void abandonPending(ClientsGroup group, String reason) {
+        var future = this.pending.remove(group);
+        if (future != null) {
+            future.completeExceptionally(new AbandonedException(reason));
+        }
+    }
+
+    private void enqueue(ClientsGroup group) {
+        var waiting = this.waitingLine.offer(group);
+        this.journal(Journal.QUEUED, group, -1);
+        this.metrics.count(Counter.QUEUED);
+        if (this.expiryWheel != null) {
+            this.expiryWheel.schedule(waiting, group.arrivalNanos() + this.maxWaitNanos);
+        }
+    }
+
+    /**
+     * Called by the expiry wheel only, the future and the callback of the group are left to {@link #EXPIRY_CALLBACKS}.
+     */
+    private boolean expire(WaitingLine.Waiting waiting) {
+        if (!this.waitingLine.remove(waiting)) {
+            return false; // seated or abandoned before its deadline
+        }
+        var group = waiting.group();
+        this.journal(Journal.UNQUEUED, group, -1);
+        this.metrics.count(Counter.EXPIRED);
+        var future = this.pending.remove(group);
+        this.expired.add(() -> {
+            if (future != null) {
+                future.completeExceptionally(new TimeoutException("Waited longer than " + Duration.ofNanos(this.maxWaitNanos)));
+            }
+            this.notifyAbandoned(group);
+        });
+        if (this.notifyingExpired.compareAndSet(false, true)) {
+            EXPIRY_CALLBACKS.execute(this::notifyExpired);
+        }
+        return true;
+    }
+
+    /**
+     * A single task per restaurant at a time, so its callbacks still run one after another, in the order of expiry.
+     */
+    private void notifyExpired() {
+        do {
+            Runnable callback;
+            while ((callback = this.expired.poll()) != null) {
+                callback.run();
+            }
+            this.notifyingExpired.set(false);
+        } while (!this.expired.isEmpty() && this.notifyingExpired.compareAndSet(false, true)); // queued after the last poll, before the reset
+    }
+
+    /**
+     * A failing callback is reported without stopping the caller.
+     */
+    private void notifyAbandoned(ClientsGroup group) {
+        try {
+            this.onAbandon.accept(group);
+        } catch (RuntimeException e) {
+            Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), e);
+        }
+    }
+
+    boolean drain(long deadlineNanos) {
+        this.accepting = false;
+        while (!this.waitingLine.isEmpty()) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            if (this.manualDispatch) {
+                this.dispatch(); // nobody else may be left to run it
+            }
+            LockSupport.parkNanos(DRAIN_POLL_NANOS);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.accepting = false;
+        this.closed = true;
+        if (this.expiryTask != null) {
+            this.expiryTask.cancel(false);
+        }
+        var holdSweep = this.holdSweep;
+        if (holdSweep != null) {
+            holdSweep.cancel(false);
+        }
+        this.signalDispatcher();
+        var thread = this.dispatcher.get();
+        if (thread != null && thread != Thread.currentThread()) { // it may be closed from a callback of its own dispatcher
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.abandoned(this.waitingLine.removeIf(cg -> true, cg -> {
+            this.journal(Journal.UNQUEUED, cg, -1);
+            this.abandonPending(cg, "Restaurant is closed");
+            this.notifyAbandoned(cg);
+        }));
+        var journal = this.journal;
+        if (journal != null) {
+            this.journal = null; // seated groups may still leave, they are only journaled until here
+            journal.close();
+        }
+    }
+
+    @Override
+    public boolean abandonQueue(ClientsGroup group) {
+        return this.abandoned(group, this.waitingLine.remove(group, cg -> true));
+    }
+
+    @Override
+    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+        long arrivedBefore = this.clock.nanos() - waitLimit.toNanos();
+        return this.abandoned(group, this.waitingLine.remove(group, cg -> cg.arrivalNanos() < arrivedBefore));
+    }
+
+    @Override
+    public boolean abandonAllIf(Duration waitLimit) {
+        long arrivedBefore = this.clock.nanos() - waitLimit.toNanos();
+        return this.abandoned(this.waitingLine.removeIf(cg -> cg.arrivalNanos() < arrivedBefore, cg -> {
+            this.journal(Journal.UNQUEUED, cg, -1);
+            this.abandonPending(cg, "Abandoned the queue");
+        }));
+    }
+
+    private boolean abandoned(ClientsGroup group, boolean removed) {
+        if (removed) {
+            this.journal(Journal.UNQUEUED, group, -1);
+            this.abandonPending(group, "Abandoned the queue");
+        }
+        return this.abandoned(removed ? 1 : 0);
+    }
+
+    private boolean abandoned(int groups) {
+        this.metrics.count(Counter.ABANDONED, groups);
+        return groups > 0;
+    }
+
+    /**
+     * One pass of the dispatcher, only the group sizes which fit the current free capacity are examined.
+     *
+     * @return whether anybody has been seated
+     */
+    protected boolean dispatch() {
+        long start = this.metrics.dispatchPassStart();
+        this.waitEstimator.tick(this.clock.nanos());
+        boolean seated = !this.waitingLine.isEmpty() && (this.seatingPolicy.window() == 0
+                ? this.waitingLine.dispatch(this.largestFit(), this::tryTakeSeat, cg -> this.seatedFromQueue(cg, this))
+                : this.dispatchWindow());
+        if (!seated && !this.victims.isEmpty()) {
+            seated = this.steal();
+        }
+        this.metrics.count(Counter.DISPATCH_PASSES);
+        if (!seated) {
+            this.metrics.count(Counter.DISPATCH_IDLE);
+        }
+        this.metrics.recordDispatchPass(start);
+        return seated;
+    }
+
+    /**
+     * Carries out the plan of the policy over the window, up to the first seat swap which fails,
+     * since the capacity it was planned on has changed then and the next pass plans again.
+     * <p>The capacity the window cannot use goes to the rest of the line by a greedy pass, so a window never idles tables
+     * the plain FIFO pass would have filled.
+     * <p>Every group left behind a seated younger one has been bypassed once more. The oldest one bypassed too often
+     * has to be planned in, or else nobody younger is seated, arrivals included, until it is.
+     */
+    private boolean dispatchWindow() {
+        var window = this.waitingLine.window(this.largestTable, this.seatingPolicy.window());
+        var sizes = window.stream().mapToInt(waiting -> waiting.group().size()).toArray();
+        int mustSeat = IntStream.range(0, sizes.length)
+                .filter(i -> window.get(i).bypassed() >= this.seatingPolicy.maxBypass())
+                .findFirst()
+                .orElse(-1);
+        var capacity = new int[SeatIndex.MAX_SEATS + 1];
+        this.seatIndex().capacity(capacity, this.reservations.hasHolds());
+        var plan = sizes.length == 0 ? List.<SeatingPolicy.Placement>of() : this.seatingPolicy.plan(sizes, capacity, mustSeat);
+        boolean mustSeatPlanned = mustSeat < 0 || plan.stream().anyMatch(placement -> placement.group() == mustSeat);
+        int youngest = -1;
+        for (var placement : plan) {
+            if (!mustSeatPlanned && placement.group() > mustSeat) {
+                continue; // the bound does not depend on the policy keeping it
+            }
+            int seatsLeft = placement.seatsLeft();
+            if (!this.waitingLine.seat(window.get(placement.group()),
+                    group -> this.takeSeat(group, g -> this.seatIndex().findWithSeatsLeft(seatsLeft), false),
+                    group -> this.seatedFromQueue(group, this))) {
+                break;
+            }
+            youngest = Math.max(youngest, placement.group());
+        }
+        if (mustSeatPlanned && this.waitingLine.dispatch(this.largestFit(), this::tryTakeSeat, cg -> this.seatedFromQueue(cg, this))) {
+            youngest = sizes.length; // younger than the whole window
+        }
+        boolean starving = false;
+        for (int i = 0; i < sizes.length; i++) {
+            var waiting = window.get(i);
+            if (waiting.isWaiting()) {
+                if (i < youngest) {
+                    waiting.bypass();
+                }
+                starving |= waiting.bypassed() >= this.seatingPolicy.maxBypass();
+            }
+        }
+        this.waitingLine.setStarving(starving);
+        return youngest >= 0;
+    }
+
+    /**
+     * Seats the oldest fitting heads of the other shards at own tables.
+     * <p>Waiting entries are claimed the same way by every dispatcher, so a group is seated by one shard only.
+     * <p>A line with a starving group is left to its own dispatcher, which is the only one to respect the bound.
+     */
+    private boolean steal() {
+        int maxFit = this.largestFit();
+        for (var victim : this.victims) {
+            if (victim.waitingLine.hasWaitingUpTo(maxFit) && !victim.waitingLine.isStarving()
+                    && victim.waitingLine.dispatch(maxFit, this::tryTakeSeat, cg -> this.seatedFromQueue(cg, victim))) {
+                this.metrics.count(Counter.STOLEN);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void seatedFromQueue(ClientsGroup group, RestaurantManager home) {
+        home.journal(Journal.UNQUEUED, group, -1); // the seat itself goes to the journal of this shard
+        if (this.metrics.isEnabled()) {
+            this.metrics.count(Counter.SEATED_FROM_QUEUE);
+            this.metrics.recordWait(this.clock.nanos() - group.arrivalNanos());
+        }
+        this.seated(group, home);
+    }
+
+    /**
+     * Counts a failed seat swap or a stale index hint.
+     *
+     * @return always true, so it can close a retry condition
+     */
+    protected boolean retried() {
+        this.metrics.count(Counter.SEAT_RETRIES);
+        return true;
+    }
+
+    /**
+     * Called by an engine right after the seating swap of the group.
+     */
+    protected void seatTaken(ClientsGroup group, int index) {
+        this.seatedSeats.add(group.size());
+        this.journal(Journal.SEATED, group, index);
+    }
+
+    private void seatsFreed(int seats, int groups) {
+        this.seatedSeats.add(-seats);
+        this.metrics.count(Counter.LEFT, groups);
+        this.signalDispatcher();
+    }
+
+    /**
+     * Tells the dispatcher that the queue or the free seats have changed.
+     */
+    protected void signalDispatcher() {
+        if (this.actionOnWait != null) {
+            this.actionOnWait.onSignal();
+        }
+    }
+
+    /**
+     * Body of the dispatcher, it is started by the first arrival and returns once the restaurant is closed.
+     * <p>The wait strategy is consulted whenever a pass seats nobody, not only on an empty queue,
+     * so an event-driven strategy can sleep while the waiting groups do not fit.
+     * <p>Closing signals the strategy, so a parked dispatcher wakes up to see it.
+     */
+    protected void loopOverClientGroupQueue() {
+        while (!this.closed) {
+            if (!this.dispatch()) {
+                Optional.ofNullable(this.actionOnWait).ifPresent(ActionOnWait::doOnWait);
+            } else {
+                Optional.ofNullable(this.actionOnWait).ifPresent(ActionOnWait::onProgress);
+            }
+        }
+    }
+
+    /**
+     * @return slot of the smallest fully free table fitting the group, or -1 if there is none
+     */
+    protected abstract int findFreeTable(ClientsGroup group);
+
+    /**
+     * @return slot of the smallest partially occupied table fitting the group, or -1 if there is none
+     */
+    protected abstract int findNonFreeTable(ClientsGroup group);
+
+    /**
+     * Takes a seat at the table chosen by the seating policy.
+     */
+    protected boolean tryTakeSeat(ClientsGroup group) {
+        return this.takeSeat(group, this.findTable, false);
+    }
+
+    /**
+     * Bracketed by the sequence lock of these tables, which are not necessarily the ones of the line the group comes from.
+     */
+    private boolean takeSeat(ClientsGroup group, ToIntFunction<ClientsGroup> findTable, boolean booked) {
+        this.changes.begin();
+        boolean seated = this.tryTakeSeat(group, findTable, booked);
+        this.changes.end(seated);
+        return seated;
+    }
+
+    /**
+     * Asks for candidates until the engine seats the group at one, a stale or contended candidate counts as a retry.
+     *
+     * @param findTable slot of a table which is worth a try, or -1 to give up
+     * @param booked    the group has the table to itself, by a hold or by the journal, so holds do not keep it off
+     */
+    private boolean tryTakeSeat(ClientsGroup group, ToIntFunction<ClientsGroup> findTable, boolean booked) {
+        int index;
+        while ((index = findTable.applyAsInt(group)) >= 0) {
+            if (this.trySeatAt(group, index, booked)) {
+                return true;
+            }
+            this.retried();
+        }
+        return false;
+    }
+
+    /**
+     * One seating swap at a candidate of the index, which is only a hint: the engine re-validates the fresh state of the table
+     * with {@link #canSeat} first, and calls {@link #seatTaken} right after a successful swap.
+     *
+     * @return false if the table cannot take the group anymore or the swap has lost a race
+     */
+    protected abstract boolean trySeatAt(ClientsGroup group, int index, boolean booked);
+
+    /**
+     * Re-validation shared by the engines, on the seat state they are about to swap.
+     * <p>The hold is checked again as well, a hold may have come due since the index has offered the table.
+     */
+    protected boolean canSeat(ClientsGroup group, int index, boolean open, int seatsLeft, boolean booked) {
+        return open && seatsLeft >= group.size() && (booked || !this.isHeld(index));
+    }
+
+    protected abstract SeatIndex seatIndex();
+
+    /**
+     * Reads every table without locking, consistent only under a read of {@link #changes}, so a torn read must not fail.
+     */
+    protected abstract List<OccupancySnapshot.TableView> tableViews();
+
+    /**
+     * Publishes the seat state of new tables from the given slot on, then indexes them;
+     * called by the single writer of the table set, or by the constructor.
+     */
+    protected abstract void addSlots(int first, List<Table> tables);
+
+    /**
+     * Opens or closes the table by a swap of its seat state, so a seat swap racing with closing it fails.
+     */
+    protected abstract void setOpen(int index, boolean open);
+
+    protected abstract boolean isOpen(int index);
+
+    protected abstract boolean isEmpty(int index);
+
+    protected abstract Table table(int index);
+
+    /**
+     * Takes the seated group off its table, without waking the dispatcher.
+     *
+     * @return the table the group has left
+     * @throws IllegalStateException if the group is not seated
+     */
+    protected abstract Table release(ClientsGroup group);
+
+    /**
+     * @return the biggest group which could be seated right now, or 0 if every table is full
+     */
+    protected abstract int largestFit();
+
+    /**
+     * @param open false for a disabled or removed table, which takes no more groups
+     */
+    protected record SeatData(Table table, List<ClientsGroup> clientsGroups, int seatsLeft, boolean open) {
+    }
+}
@@ -0,0 +1,227 @@
+package com.restaurant;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Capacity-bucketed index of the tables, keyed by seats left.
+ *
+ * <p>Fully free tables are kept in {@code freeTables}, partially occupied ones in {@code partialTables}, full tables in none of them.
+ * <p>Inside a bucket the slots are ordered by table size and then by slot number, which is the fill order of the former sorted scans.
+ * <p>The index is only a hint: every candidate is validated against the seat state of its owner,
+ * and the owner re-syncs a slot after each successful update of that slot.
+ * <p>Tables can be added at any time, the per-slot data is immutable, so it is copied into bigger arrays and published at once.
+ * A closed table simply reports no seats left, so it is in no bucket.
+ * <p>A table held for a reservation is skipped by every lookup, as if it were full. Unlike its seats, a hold comes and goes with time,
+ * so it is checked on each candidate instead of being kept in the buckets.
+ */
+final class SeatIndex {
+
+    static final int MAX_SEATS = Collections.max(RestUtil.SEATS);
+    private static final int SLOT_BITS = 24;
+    static final int MAX_TABLES = 1 << SLOT_BITS;
+
+    private volatile int[] tableSizes = new int[0];
+    /**
+     * Pre-boxed ordering keys ({@code tableSize << SLOT_BITS | slot}), so neither lookups nor re-syncs allocate.
+     */
+    private volatile Integer[] keys = new Integer[0];
+    private final IntUnaryOperator seatsLeft;
+    private final IntPredicate held;
+    private final List<NavigableSet<Integer>> freeTables;
+    private final List<NavigableSet<Integer>> partialTables;
+    /**
+     * Number of tables per bucket of seats left, free and partial alike, kept along with the bucket memberships.
+     */
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(MAX_SEATS + 1);
+
+    /**
+     * @param seatsLeft current seats left of a given slot, read from the seat state of the owner, 0 for a closed table
+     * @param held      whether a given slot takes no walk-in now, see {@link Reservations#isHeld(int)}
+     */
+    SeatIndex(IntUnaryOperator seatsLeft, IntPredicate held) {
+        this.seatsLeft = seatsLeft;
+        this.held = held;
+        this.freeTables = buckets();
+        this.partialTables = buckets();
+    }
+
+    /**
+     * Indexes the next slots, once their seat state is in place; called by the single writer of the table set.
+     */
+    void add(List<Table> tables) {
+        int first = this.keys.length;
+        var tableSizes = Arrays.copyOf(this.tableSizes, first + tables.size());
+        var keys = Arrays.copyOf(this.keys, first + tables.size());
+        for (int slot = first; slot < keys.length; slot++) {
+            tableSizes[slot] = tables.get(slot - first).size();
+            keys[slot] = tableSizes[slot] << SLOT_BITS | slot;
+        }
+        this.tableSizes = tableSizes;
+        this.keys = keys;
+        for (int slot = first; slot < keys.length; slot++) {
+            this.sync(slot);
+        }
+    }
+
+    private static List<NavigableSet<Integer>> buckets() {
+        return IntStream.rangeClosed(0, MAX_SEATS)
+                .<NavigableSet<Integer>>mapToObj(seats -> new ConcurrentSkipListSet<>())
+                .toList();
+    }
+
+    /**
+     * @return the smallest fully free table fitting the group, or -1 if there is none
+     */
+    int findFree(int groupSize) {
+        for (int seats = groupSize; seats <= MAX_SEATS; seats++) {
+            int slot = this.first(this.freeTables.get(seats), seats);
+            if (slot >= 0) {
+                return slot; // buckets of free tables are ordered by table size themselves
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the smallest partially occupied table fitting the group, or -1 if there is none
+     */
+    int findPartial(int groupSize) {
+        int found = -1;
+        for (int seats = groupSize; seats < MAX_SEATS; seats++) {
+            int slot = this.first(this.partialTables.get(seats), seats);
+            if (slot >= 0 && (found < 0 || this.keys[slot] < this.keys[found])) {
+                found = slot;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Best fit: the table with the fewest seats left which still fit the group, partially occupied tables first on a tie.
+     *
+     * @return slot of the table, or -1 if there is none
+     */
+    int findBestFit(int groupSize) {
+        for (int seats = groupSize; seats <= MAX_SEATS; seats++) {
+            int slot = this.findWithSeatsLeft(seats);
+            if (slot >= 0) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return slot of a table with exactly the given seats left, or -1 if there is none
+     */
+    int findWithSeatsLeft(int seats) {
+        int slot = seats < MAX_SEATS ? this.first(this.partialTables.get(seats), seats) : -1;
+        return slot >= 0 ? slot : this.first(this.freeTables.get(seats), seats);
+    }
+
+    /**
+     * Fills in the number of tables per seats left, a hint like the buckets themselves.
+     * <p>While there are holds, the buckets are walked the way {@link #first} does, so no held table is counted;
+     * otherwise the counts kept along with the buckets are read.
+     *
+     * @param holds whether any table may be held
+     */
+    void capacity(int[] tablesBySeatsLeft, boolean holds) {
+        tablesBySeatsLeft[0] = 0;
+        for (int seats = 1; seats <= MAX_SEATS; seats++) {
+            tablesBySeatsLeft[seats] = !holds ? this.counts.get(seats)
+                    : this.available(this.freeTables.get(seats), seats) + (seats < MAX_SEATS ? this.available(this.partialTables.get(seats), seats) : 0);
+        }
+    }
+
+    private int available(NavigableSet<Integer> bucket, int expectedSeatsLeft) {
+        int available = 0;
+        for (int key : bucket) {
+            int slot = key & (MAX_TABLES - 1);
+            if (this.seatsLeft.applyAsInt(slot) == expectedSeatsLeft && !this.held.test(slot)) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    /**
+     * @return the biggest group which could be seated right now, or 0 if every table is full
+     */
+    int largestFit() {
+        for (int seats = MAX_SEATS; seats > 0; seats--) {
+            if (this.first(this.freeTables.get(seats), seats) >= 0 || (seats < MAX_SEATS && this.first(this.partialTables.get(seats), seats) >= 0)) {
+                return seats;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * First slot of the bucket which really has the expected seats left, stale entries and held tables are skipped.
+     */
+    private int first(NavigableSet<Integer> bucket, int expectedSeatsLeft) {
+        var key = bucket.ceiling(0);
+        while (key != null) {
+            int slot = key & (MAX_TABLES - 1);
+            if (this.seatsLeft.applyAsInt(slot) == expectedSeatsLeft && !this.held.test(slot)) {
+                return slot;
+            }
+            key = bucket.higher(key);
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the slot to the bucket of its current seats left.
+     * <p>Repeats until the seat state is unchanged, so a concurrent re-sync of the same slot with stale data is always corrected.
+     */
+    void sync(int slot) {
+        int left;
+        do {
+            left = this.seatsLeft.applyAsInt(slot);
+            this.place(slot, left);
+        } while (left != this.seatsLeft.applyAsInt(slot));
+    }
+
+    private void place(int slot, int left) {
+        var key = this.keys[slot];
+        int size = this.tableSizes[slot];
+        for (int seats = 1; seats < size; seats++) {
+            if (seats != left) {
+                this.remove(this.partialTables.get(seats), seats, key);
+            }
+        }
+        if (left == size) {
+            this.add(this.freeTables.get(size), size, key);
+        } else {
+            this.remove(this.freeTables.get(size), size, key);
+            if (left > 0) {
+                this.add(this.partialTables.get(left), left, key);
+            }
+        }
+    }
+
+    /**
+     * Counts follow the outcome of the set operation, so they stay in line with the memberships under concurrent re-syncs.
+     */
+    private void add(NavigableSet<Integer> bucket, int seats, Integer key) {
+        if (bucket.add(key)) {
+            this.counts.incrementAndGet(seats);
+        }
+    }
+
+    private void remove(NavigableSet<Integer> bucket, int seats, Integer key) {
+        if (bucket.remove(key)) {
+            this.counts.decrementAndGet(seats);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.restaurant;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sequence lock with many writers, for consistent reads of a restaurant which never hold up a change.
+ *
+ * <p>A writer brackets each change with {@link #begin()} and {@link #end(boolean)}, which count on a stripe of its own thread,
+ * so writers never wait for each other nor for readers, and do not share a counter.
+ * <p>A reader takes a version while no change is in progress, reads the state, and keeps what it has read
+ * only if no change has begun since: the sum of the begin counts has not moved.
+ * <p>An attempt which has changed nothing, e.g. a seat swap which has failed, takes its begin back,
+ * so a dispatcher which keeps trying does not keep the readers retrying.
+ * <p>Brackets may nest, a nested change simply counts twice.
+ */
+final class SeqLock {
+
+    /**
+     * Longs per stripe, so the stripes of different writers never share a cache line.
+     */
+    private static final int PAD = 16;
+
+    private final AtomicLongArray counters;
+    private final int mask;
+
+    SeqLock() {
+        int stripes = Integer.highestOneBit(Math.max(1, 2 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.counters = new AtomicLongArray(stripes * PAD);
+        this.mask = stripes - 1;
+    }
+
+    void begin() {
+        this.counters.getAndIncrement(this.stripe() * PAD);
+    }
+
+    /**
+     * @param changed whether the bracketed attempt has changed anything
+     */
+    void end(boolean changed) {
+        if (changed) {
+            this.counters.getAndIncrement(this.stripe() * PAD + 1);
+        } else {
+            this.counters.getAndDecrement(this.stripe() * PAD);
+        }
+    }
+
+    private int stripe() {
+        return Thread.currentThread().hashCode() & this.mask;
+    }
+
+    /**
+     * Each stripe has its end count read before its begin count, so equal counts mean none of its changes was in progress.
+     *
+     * @return version to read the state at, or -1 while a change is in progress
+     */
+    long readBegin() {
+        long version = 0;
+        for (int stripe = 0; stripe <= this.mask; stripe++) {
+            long ended = this.counters.get(stripe * PAD + 1);
+            long begun = this.counters.get(stripe * PAD);
+            if (begun != ended) {
+                return -1;
+            }
+            version += begun;
+        }
+        return version;
+    }
+
+    /**
+     * @return whether the state read since {@link #readBegin()} is consistent, as no change has begun meanwhile
+     */
+    boolean validate(long version) {
+        long begun = 0;
+        for (int stripe = 0; stripe <= this.mask; stripe++) {
+            begun += this.counters.get(stripe * PAD);
+        }
+        return begun == version;
+    }
+}
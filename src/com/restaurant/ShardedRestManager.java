@@ -0,0 +1,303 @@
+package com.restaurant;
+
+import com.restaurant.metrics.MetricsSnapshot;
+import com.restaurant.wait.ActionOnWait;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Restaurant split into shards, e.g. its dining rooms, each with its own tables, waiting line and dispatcher.
+ *
+ * <p>An arrival is routed to the least occupied shard which can seat it right away, or else to the shortest line
+ * among the shards having a table big enough for it.
+ * <p>A dispatcher with nothing of its own to seat steals the oldest fitting heads of the other lines,
+ * so a group never waits for its own room while another one has a free table.
+ * <p>Composite pattern used here: every shard is a complete engine of {@link RestManager}.
+ */
+public class ShardedRestManager implements Manager {
+
+    private final List<RestaurantManager> shards;
+    private final int[] largestTables;
+
+    /**
+     * @param rooms        tables of each shard
+     * @param actionOnWait one strategy per shard, since a strategy may keep its dispatcher thread
+     * @param settings     shared by the shards, each one keeps its journal in a {@code shard-<index>} directory of its own
+     */
+    public ShardedRestManager(List<List<Table>> rooms, boolean lockFree, Supplier<ActionOnWait> actionOnWait, RestSettings settings) {
+        if (rooms.isEmpty() || rooms.stream().anyMatch(List::isEmpty)) {
+            throw new IllegalArgumentException("Every shard needs tables");
+        }
+        this.shards = IntStream.range(0, rooms.size())
+                .mapToObj(i -> RestManager.engine(rooms.get(i), lockFree, actionOnWait.get(),
+                        settings.journal() == null ? settings : settings.withJournal(settings.journal().resolve("shard-" + i))))
+                .toList();
+        this.largestTables = rooms.stream()
+                .mapToInt(tables -> tables.stream().mapToInt(Table::size).max().orElse(0))
+                .toArray();
+        for (int i = 0; i < this.shards.size(); i++) {
+            var victims = new ArrayList<RestaurantManager>();
+            for (int j = 1; j < this.shards.size(); j++) { // every thief starts with its next neighbour, so the victims are spread
+                victims.add(this.shards.get((i + j) % this.shards.size()));
+            }
+            this.shards.get(i).stealFrom(victims);
+        }
+    }
+
+    /**
+     * Deals the tables out to the shards round-robin by size, so every shard gets a similar mix.
+     */
+    public ShardedRestManager(List<Table> tables, int shardCount, boolean lockFree, Supplier<ActionOnWait> actionOnWait, RestSettings settings) {
+        this(deal(tables, shardCount), lockFree, actionOnWait, settings);
+    }
+
+    private static List<List<Table>> deal(List<Table> tables, int shardCount) {
+        if (shardCount <= 0 || shardCount > tables.size()) {
+            throw new IllegalArgumentException("Shard count must be between 1 and the number of tables");
+        }
+        var sorted = tables.stream().sorted(Comparator.comparingInt(Table::size)).toList();
+        return IntStream.range(0, shardCount)
+                .mapToObj(shard -> IntStream.iterate(shard, i -> i < sorted.size(), i -> i + shardCount).mapToObj(sorted::get).toList())
+                .toList();
+    }
+
+    @Override
+    public void onArrive(ClientsGroup group) {
+        this.checkNotHeld(group);
+        var shard = this.shards.get(this.route(group));
+        shard.onArrive(group);
+        this.nudgeOthers(shard, group);
+    }
+
+    /**
+     * Routes every group like {@link #onArrive(ClientsGroup)}, in order, and wakes up each concerned dispatcher once at the end.
+     */
+    @Override
+    public void onArriveAll(Collection<ClientsGroup> groups) {
+        var queuedIn = new boolean[this.shards.size()];
+        int smallestQueued = Integer.MAX_VALUE;
+        for (var group : groups) {
+            this.checkNotHeld(group);
+            int shard = this.route(group);
+            if (this.shards.get(shard).admit(group, true)) {
+                queuedIn[shard] = true;
+                smallestQueued = Math.min(smallestQueued, group.size());
+            }
+        }
+        for (int i = 0; i < this.shards.size(); i++) {
+            var shard = this.shards.get(i);
+            if (queuedIn[i] || shard.largestFit() >= smallestQueued) { // own queue, or a group it may steal
+                shard.signalDispatcher();
+            }
+        }
+    }
+
+    /**
+     * See {@link RestManager#arrive(ClientsGroup)}, a group stolen by another shard completes the same way.
+     */
+    public CompletableFuture<Table> arrive(ClientsGroup group) {
+        var shard = this.shards.get(this.route(group));
+        var future = shard.arrive(group);
+        this.nudgeOthers(shard, group);
+        return future;
+    }
+
+    private void nudgeOthers(RestaurantManager shard, ClientsGroup group) {
+        if (this.shards.size() > 1 && shard.lookup(group) == null) {
+            for (var other : this.shards) { // a shard which has freed a table since the routing may steal the group
+                if (other != shard && other.largestFit() >= group.size()) {
+                    other.signalDispatcher();
+                }
+            }
+        }
+    }
+
+    /**
+     * A shard only knows its own groups, and an equal group may sit or wait in any of them.
+     */
+    private void checkNotHeld(ClientsGroup group) {
+        if (this.shards.stream().anyMatch(shard -> shard.holds(group))) {
+            throw new IllegalStateException("Group has already arrived");
+        }
+    }
+
+    /**
+     * @return index of the shard
+     */
+    private int route(ClientsGroup group) {
+        int seatable = -1;
+        double seatableLoad = Double.MAX_VALUE;
+        int shortest = -1;
+        int shortestLine = Integer.MAX_VALUE;
+        for (int i = 0; i < this.shards.size(); i++) {
+            var shard = this.shards.get(i);
+            if (this.largestTables[i] < group.size()) {
+                continue;
+            }
+            if (shard.largestFit() >= group.size() && !shard.waitingLine.hasWaitingUpTo(group.size())) {
+                double load = (double) shard.getSeatCount() / shard.totalSeats();
+                if (load < seatableLoad) {
+                    seatable = i;
+                    seatableLoad = load;
+                }
+            } else if (seatable < 0) {
+                int line = shard.getQueueCount();
+                if (line < shortestLine) {
+                    shortest = i;
+                    shortestLine = line;
+                }
+            }
+        }
+        if (seatable >= 0) {
+            return seatable;
+        }
+        return Math.max(shortest, 0); // too big for every table, it waits like in a single restaurant
+    }
+
+    @Override
+    public void onLeave(ClientsGroup group) {
+        this.shards.get(this.seatedIn(group)).onLeave(group); // a seated group never moves, so its shard cannot change meanwhile
+    }
+
+    /**
+     * Each shard frees its tables in one batch, see {@link RestManager#onLeaveAll(Collection)}.
+     */
+    @Override
+    public void onLeaveAll(Collection<ClientsGroup> groups) {
+        var byShard = new ArrayList<List<ClientsGroup>>(this.shards.size());
+        this.shards.forEach(shard -> byShard.add(new ArrayList<>()));
+        try {
+            for (var group : groups) {
+                byShard.get(this.seatedIn(group)).add(group);
+            }
+        } finally { // the groups before an unknown one still leave
+            for (int i = 0; i < this.shards.size(); i++) {
+                if (!byShard.get(i).isEmpty()) {
+                    this.shards.get(i).onLeaveAll(byShard.get(i));
+                }
+            }
+        }
+    }
+
+    private int seatedIn(ClientsGroup group) {
+        for (int i = 0; i < this.shards.size(); i++) {
+            if (this.shards.get(i).lookup(group) != null) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public Table lookup(ClientsGroup group) {
+        for (var shard : this.shards) {
+            var table = shard.lookup(group);
+            if (table != null) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean abandonQueue(ClientsGroup group) {
+        return this.shards.stream().anyMatch(shard -> shard.abandonQueue(group));
+    }
+
+    @Override
+    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+        return this.shards.stream().anyMatch(shard -> shard.abandonQueueIf(group, waitLimit));
+    }
+
+    @Override
+    public boolean abandonAllIf(Duration waitLimit) {
+        boolean abandoned = false;
+        for (var shard : this.shards) {
+            abandoned |= shard.abandonAllIf(waitLimit);
+        }
+        return abandoned;
+    }
+
+    /**
+     * Runs one dispatcher pass of every shard on the calling thread, meant for {@link RestSettings#manualDispatch()}.
+     *
+     * @return whether anybody has been seated
+     */
+    public boolean dispatch() {
+        boolean seated = false;
+        for (var shard : this.shards) {
+            seated |= shard.dispatch();
+        }
+        return seated;
+    }
+
+    /**
+     * Drains every shard, see {@link RestManager#drain(Duration)}.
+     */
+    public boolean drain(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean drained = true;
+        for (var shard : this.shards) {
+            drained &= shard.drain(deadline);
+        }
+        return drained;
+    }
+
+    /**
+     * Closes every shard, see {@link RestManager#close()}.
+     */
+    @Override
+    public void close() {
+        this.shards.forEach(RestaurantManager::close);
+    }
+
+    /**
+     * The whole restaurant at once: the seats wanted in every line, over the seats freed by every shard,
+     * since the dispatchers steal each other's waiting groups.
+     */
+    @Override
+    public long estimatedWaitNanos(int groupSize) {
+        RestaurantManager.checkGroupSize(groupSize);
+        int seatsAhead = 0;
+        boolean fits = false;
+        double freeingRate = 0;
+        for (var shard : this.shards) {
+            int shardAhead = shard.waitingLine.seatsWaitingUpTo(groupSize);
+            seatsAhead += shardAhead;
+            fits |= shardAhead == 0 && shard.largestFit() >= groupSize; // where the routing would seat it right away
+            freeingRate += shard.freeingRate(groupSize);
+        }
+        return RestaurantManager.estimatedWaitNanos(groupSize, seatsAhead, fits, freeingRate);
+    }
+
+    @Override
+    public int getQueueCount() {
+        return this.shards.stream().mapToInt(RestaurantManager::getQueueCount).sum();
+    }
+
+    @Override
+    public int getSeatCount() {
+        return this.shards.stream().mapToInt(RestaurantManager::getSeatCount).sum();
+    }
+
+    /**
+     * @return a consistent view of each shard, in the order of the rooms; the shards are read one after another
+     */
+    public List<OccupancySnapshot> occupancy() {
+        return this.shards.stream().map(RestaurantManager::occupancy).toList();
+    }
+
+    /**
+     * @return metrics of each shard, in the order of the rooms
+     */
+    public List<MetricsSnapshot> metrics() {
+        return this.shards.stream().map(RestaurantManager::metrics).toList();
+    }
+}
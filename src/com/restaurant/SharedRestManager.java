@@ -0,0 +1,515 @@
+package com.restaurant;
+
+import com.restaurant.clock.RestClock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A restaurant shared by several processes of one host: its tables and its waiting line live in a memory-mapped file,
+ * and every process opening the file seats and looks up groups directly in it, without any server process.
+ *
+ * <p>The tables follow the layout of the packed engine: the seats left and the sizes of the occupant slots of a table
+ * are one {@code long} word, changed by a single CAS, and the arrival of each occupant is kept under its slot.
+ * <p>The waiting line is one bounded ring per group size; each cell carries its position in the ring along with its state,
+ * so a cell reused by a later group can never be claimed by mistake. Tickets keep the arrival order across the rings.
+ * <p>There is no dispatcher thread: a process which frees seats or queues a group runs a dispatcher pass itself,
+ * and a pass which has seen seats freed meanwhile by anybody runs again, so no seat is lost between two processes.
+ * <p>Groups are identified by value, so every process has to create them on {@link RestClock#system()},
+ * whose monotonic nanos are the same for all processes of a host. Unlike {@link RestManager}, an arrival equal to a group
+ * seated or waiting is not refused, as no process sees the whole file at once.
+ * <p>A process killed in the middle of a seat swap may leave seats taken by nobody, or a waiting group claimed for good;
+ * the file has to be deleted to start afresh. Wait limits, callbacks, metrics and the journal of {@link RestManager} are not supported.
+ */
+public final class SharedRestManager implements Manager {
+
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final long MAGIC = 0x5245535453484d31L;
+    private static final int SLOTS = SeatIndex.MAX_SEATS;
+    private static final int BITS = 3;
+    private static final long MASK = (1L << BITS) - 1;
+    /**
+     * Arrival under an empty occupant slot, so it cannot be the arrival of a group.
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long CLAIM_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final int MAGIC_AT = 0;
+    private static final int TABLES_AT = 8;
+    private static final int CAPACITY_AT = 16;
+    private static final int TICKETS_AT = 24;
+    /**
+     * Bumped whenever seats are freed, a dispatcher pass which has seen it move runs again.
+     */
+    private static final int FREED_AT = 32;
+    private static final int COUNTS_AT = 64;
+    private static final int HEADER = 128;
+    private static final int CELL = 32;
+    private static final int RING_HEADER = 128;
+
+    /**
+     * States of a cell, in the lowest 2 bits of its control word, above them is its position in the ring.
+     */
+    private static final int FREE = 0;
+    private static final int WAITING = 1;
+    private static final int CLAIMED = 2;
+    private static final int TAKEN = 3;
+
+    private final List<Table> tables;
+    private final int capacity;
+    private final MappedByteBuffer buffer;
+    private final int wordsAt;
+    private final int occupantsAt;
+    private final int ringsAt;
+    private final int ringBytes;
+
+    public SharedRestManager(Path file, List<Table> tables) {
+        this(file, tables, 4_096);
+    }
+
+    /**
+     * Opens the restaurant of the file, or sets it up if the file is new; the first process to lock the file sets it up.
+     *
+     * @param tables       the same tables in the same order in every process
+     * @param lineCapacity groups of one size the waiting line can hold, rounded up to a power of two;
+     *                     an abandoned group takes its place until the groups before it are gone
+     * @throws IllegalArgumentException if the file holds a restaurant of other tables or another capacity
+     */
+    public SharedRestManager(Path file, List<Table> tables, int lineCapacity) {
+        if (tables.isEmpty() || lineCapacity <= 0) {
+            throw new IllegalArgumentException("Tables and line capacity are required");
+        }
+        this.tables = List.copyOf(tables);
+        this.capacity = Integer.highestOneBit(lineCapacity - 1) << 1;
+        int tableCount = tables.size();
+        this.wordsAt = align(HEADER + 8 * tableCount);
+        this.occupantsAt = align(this.wordsAt + 8 * tableCount);
+        this.ringsAt = align(this.occupantsAt + 8 * SLOTS * tableCount);
+        this.ringBytes = RING_HEADER + CELL * this.capacity;
+        long length = this.ringsAt + (long) WaitingLine.MAX_GROUP * this.ringBytes;
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Line capacity is too big");
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length); // stays valid once the channel is closed
+            var lock = channel.lock(); // a process which died while setting the file up has released the lock with it
+            try {
+                if (this.get(MAGIC_AT) != MAGIC) {
+                    this.setUp();
+                } else if (!this.matches()) {
+                    throw new IllegalArgumentException("Shared file holds another restaurant: " + file);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 63) & -64;
+    }
+
+    private void setUp() {
+        this.set(TABLES_AT, this.tables.size());
+        this.set(CAPACITY_AT, this.capacity);
+        this.set(TICKETS_AT, 0);
+        this.set(FREED_AT, 0);
+        for (int size = 1; size <= WaitingLine.MAX_GROUP; size++) {
+            this.set(COUNTS_AT + 8 * size, 0);
+            this.set(this.ringAt(size), 0);
+            this.set(this.ringAt(size) + 64, 0);
+            for (long position = 0; position < this.capacity; position++) {
+                this.set(this.cellAt(size, position), position << 2 | FREE);
+            }
+        }
+        for (int index = 0; index < this.tables.size(); index++) {
+            this.set(HEADER + 8 * index, this.tables.get(index).size());
+            this.set(this.wordAt(index), this.tables.get(index).size());
+            for (int slot = 0; slot < SLOTS; slot++) {
+                this.set(this.occupantAt(index * SLOTS + slot), EMPTY);
+            }
+        }
+        this.buffer.force();
+        LONG.setRelease(this.buffer, MAGIC_AT, MAGIC);
+    }
+
+    private boolean matches() {
+        if (this.get(TABLES_AT) != this.tables.size() || this.get(CAPACITY_AT) != this.capacity) {
+            return false;
+        }
+        for (int index = 0; index < this.tables.size(); index++) {
+            if (this.get(HEADER + 8 * index) != this.tables.get(index).size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onArrive(ClientsGroup group) {
+        if (group.arrivalNanos() == EMPTY) {
+            throw new IllegalArgumentException("Arrival is out of range");
+        }
+        if (this.hasWaitingUpTo(group.size()) || !this.tryTakeSeat(group)) {
+            if (!this.enqueue(group)) {
+                throw new IllegalStateException("Waiting line is full");
+            }
+            this.dispatch();
+        }
+    }
+
+    /**
+     * The arrival under the slot is cleared after the swap, unless the next group has taken the slot already.
+     */
+    @Override
+    public void onLeave(ClientsGroup group) {
+        int handle = this.find(group);
+        if (handle < 0) {
+            throw new IllegalStateException();
+        }
+        int index = handle / SLOTS;
+        int slot = handle % SLOTS;
+        long word;
+        do {
+            word = this.word(index);
+            if (occupant(word, slot) != group.size() || this.arrival(handle) != group.arrivalNanos()) {
+                throw new IllegalStateException();
+            }
+        } while (!this.cas(this.wordAt(index), word, withOccupant(word, slot, 0) + group.size()));
+        this.cas(this.occupantAt(handle), group.arrivalNanos(), EMPTY);
+        LONG.getAndAdd(this.buffer, FREED_AT, 1L);
+        this.dispatch();
+    }
+
+    /**
+     * Scans the occupant slots, a few hundred words for a hundred tables, so no shared index has to be kept in line.
+     */
+    @Override
+    public Table lookup(ClientsGroup group) {
+        int handle = this.find(group);
+        return handle < 0 ? null : this.tables.get(handle / SLOTS);
+    }
+
+    private int find(ClientsGroup group) {
+        for (int index = 0; index < this.tables.size(); index++) {
+            long word = this.word(index);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (occupant(word, slot) == group.size() && this.arrival(index * SLOTS + slot) == group.arrivalNanos()) {
+                    return index * SLOTS + slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean abandonQueue(ClientsGroup group) {
+        return this.remove(group.size(), group.arrivalNanos());
+    }
+
+    @Override
+    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+        return group.arrivalNanos() < RestClock.system().nanos() - waitLimit.toNanos() && this.abandonQueue(group);
+    }
+
+    @Override
+    public boolean abandonAllIf(Duration waitLimit) {
+        long arrivedBefore = RestClock.system().nanos() - waitLimit.toNanos();
+        boolean removed = false;
+        for (int size = 1; size <= WaitingLine.MAX_GROUP; size++) {
+            int ring = this.ringAt(size);
+            for (long position = this.getVolatile(ring); position < this.getVolatile(ring + 64); position++) {
+                long cell = this.cellAt(size, position);
+                long control = this.control(cell); // acquired before the arrival, which it publishes, as in remove()
+                if (control == (position << 2 | WAITING) && this.get(cell + 16) < arrivedBefore && this.claim(cell, position)) {
+                    this.take(size, cell, position);
+                    removed = true;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public int getQueueCount() {
+        int count = 0;
+        for (int size = 1; size <= WaitingLine.MAX_GROUP; size++) {
+            count += (int) this.getVolatile(COUNTS_AT + 8 * size);
+        }
+        return count;
+    }
+
+    @Override
+    public int getSeatCount() {
+        int seated = 0;
+        for (int index = 0; index < this.tables.size(); index++) {
+            seated += this.tables.get(index).size() - seatsLeft(this.word(index));
+        }
+        return seated;
+    }
+
+    private boolean tryTakeSeat(ClientsGroup group) {
+        int index;
+        while ((index = this.findTable(group.size())) >= 0) {
+            long word = this.word(index); // getting again for fresh data
+            if (seatsLeft(word) < group.size()) { // checking whether the table is still available
+                continue;
+            }
+            int slot = 0;
+            while (occupant(word, slot) != 0) { // a table of n seats has at most n occupants, so there is always an empty slot
+                slot++;
+            }
+            if (this.cas(this.wordAt(index), word, withOccupant(word, slot, group.size()) - group.size())) {
+                LONG.setRelease(this.buffer, this.occupantAt(index * SLOTS + slot), group.arrivalNanos());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Best fit by a scan of the words: the table with the fewest seats left which still fit, the first one on a tie.
+     */
+    private int findTable(int size) {
+        int found = -1;
+        int foundLeft = Integer.MAX_VALUE;
+        for (int index = 0; index < this.tables.size(); index++) {
+            int left = seatsLeft(this.word(index));
+            if (left >= size && left < foundLeft) {
+                found = index;
+                foundLeft = left;
+            }
+        }
+        return found;
+    }
+
+    private int largestFit() {
+        int largest = 0;
+        for (int index = 0; index < this.tables.size(); index++) {
+            largest = Math.max(largest, seatsLeft(this.word(index)));
+        }
+        return largest;
+    }
+
+    private boolean hasWaitingUpTo(int size) {
+        for (int s = 1; s <= size; s++) {
+            if (this.getVolatile(COUNTS_AT + 8 * s) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Multi-producer ring: the tail is reserved by a CAS once its cell is free, and the cell is published by its control word.
+     * The group is counted before it is visible, so the count never goes negative.
+     *
+     * @return false if the ring is full
+     */
+    private boolean enqueue(ClientsGroup group) {
+        int size = group.size();
+        int ring = this.ringAt(size);
+        long position;
+        while (true) {
+            position = this.getVolatile(ring + 64);
+            long control = this.control(this.cellAt(size, position));
+            if (control == (position << 2 | FREE)) {
+                if (this.cas(ring + 64, position, position + 1)) {
+                    break;
+                }
+            } else if (control >>> 2 < position) {
+                return false; // still the cell of the lap before
+            }
+        }
+        long cell = this.cellAt(size, position);
+        this.set(cell + 8, (long) LONG.getAndAdd(this.buffer, TICKETS_AT, 1L));
+        this.set(cell + 16, group.arrivalNanos());
+        LONG.getAndAdd(this.buffer, COUNTS_AT + 8 * size, 1L);
+        LONG.setRelease(this.buffer, (int) cell, position << 2 | WAITING);
+        return true;
+    }
+
+    /**
+     * Runs passes until no seats have been freed during one, by this process or any other.
+     */
+    private void dispatch() {
+        long freed;
+        do {
+            freed = this.getVolatile(FREED_AT);
+            this.dispatchPass();
+        } while (this.getVolatile(FREED_AT) != freed);
+    }
+
+    /**
+     * Same pass as {@link WaitingLine#dispatch}, except that a head claimed by another process rules out its size for this pass,
+     * rather than being waited for, since that process may be gone.
+     */
+    private void dispatchPass() {
+        int limit = Math.min(this.largestFit(), WaitingLine.MAX_GROUP);
+        var skipped = new boolean[WaitingLine.MAX_GROUP + 1];
+        while (true) {
+            int next = -1;
+            long nextPosition = 0;
+            long nextTicket = Long.MAX_VALUE;
+            for (int size = 1; size <= limit; size++) {
+                long position = skipped[size] ? -1 : this.liveHead(size);
+                if (position >= 0) {
+                    long ticket = this.get(this.cellAt(size, position) + 8);
+                    if (ticket < nextTicket) {
+                        next = size;
+                        nextPosition = position;
+                        nextTicket = ticket;
+                    }
+                }
+            }
+            if (next < 0) {
+                return;
+            }
+            long cell = this.cellAt(next, nextPosition);
+            var group = new ClientsGroup(next, this.get(cell + 16));
+            if (!this.cas(cell, nextPosition << 2 | WAITING, nextPosition << 2 | CLAIMED)) {
+                skipped[next] = this.control(cell) == (nextPosition << 2 | CLAIMED);
+                continue; // taken in the meantime, or being seated elsewhere
+            }
+            if (this.tryTakeSeat(group)) {
+                this.take(next, cell, nextPosition);
+            } else {
+                LONG.setRelease(this.buffer, (int) cell, nextPosition << 2 | WAITING);
+                limit = next - 1;
+            }
+        }
+    }
+
+    /**
+     * Moves the head past the taken cells, each one is freed for the lap after by whoever moves the head past it.
+     *
+     * @return position of the first cell which has not been taken, or -1 if there is none
+     */
+    private long liveHead(int size) {
+        int ring = this.ringAt(size);
+        while (true) {
+            long head = this.getVolatile(ring);
+            long cell = this.cellAt(size, head);
+            long control = this.control(cell);
+            if (control == (head << 2 | TAKEN)) {
+                if (this.cas(ring, head, head + 1)) {
+                    LONG.setRelease(this.buffer, (int) cell, (head + this.capacity) << 2 | FREE);
+                }
+            } else if (control >>> 2 == head && (control & 3) != FREE) {
+                return head;
+            } else if (control >>> 2 == head || head == this.getVolatile(ring)) {
+                return -1; // not published yet, or empty
+            }
+        }
+    }
+
+    /**
+     * Scans the ring of the size, so abandoning is linear in the groups of that size.
+     */
+    private boolean remove(int size, long arrival) {
+        int ring = this.ringAt(size);
+        for (long position = this.getVolatile(ring); position < this.getVolatile(ring + 64); position++) {
+            long cell = this.cellAt(size, position);
+            long control = this.control(cell);
+            if (control >>> 2 == position && ((control & 3) == WAITING || (control & 3) == CLAIMED) && this.get(cell + 16) == arrival) {
+                if (this.claim(cell, position)) {
+                    this.take(size, cell, position);
+                    return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits out a seat swap of another process, up to a bound, as that process may have died in the middle of it.
+     */
+    private boolean claim(long cell, long position) {
+        long deadline = System.nanoTime() + CLAIM_NANOS;
+        while (true) {
+            if (this.cas(cell, position << 2 | WAITING, position << 2 | CLAIMED)) {
+                return true;
+            }
+            if (this.control(cell) != (position << 2 | CLAIMED) || System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void take(int size, long cell, long position) {
+        LONG.setRelease(this.buffer, (int) cell, position << 2 | TAKEN);
+        LONG.getAndAdd(this.buffer, COUNTS_AT + 8 * size, -1L);
+        this.liveHead(size);
+    }
+
+    private int ringAt(int size) {
+        return this.ringsAt + (size - 1) * this.ringBytes;
+    }
+
+    private long cellAt(int size, long position) {
+        return this.ringAt(size) + RING_HEADER + (position & (this.capacity - 1)) * CELL;
+    }
+
+    private int wordAt(int index) {
+        return this.wordsAt + 8 * index;
+    }
+
+    private int occupantAt(int handle) {
+        return this.occupantsAt + 8 * handle;
+    }
+
+    private long word(int index) {
+        return this.getVolatile(this.wordAt(index));
+    }
+
+    private long arrival(int handle) {
+        return (long) LONG.getAcquire(this.buffer, this.occupantAt(handle));
+    }
+
+    private long control(long cell) {
+        return (long) LONG.getAcquire(this.buffer, (int) cell);
+    }
+
+    private long get(long offset) {
+        return (long) LONG.get(this.buffer, (int) offset);
+    }
+
+    private long getVolatile(int offset) {
+        return (long) LONG.getVolatile(this.buffer, offset);
+    }
+
+    private void set(long offset, long value) {
+        LONG.set(this.buffer, (int) offset, value);
+    }
+
+    private boolean cas(long offset, long expected, long value) {
+        return LONG.compareAndSet(this.buffer, (int) offset, expected, value);
+    }
+
+    private static int seatsLeft(long word) {
+        return (int) (word & MASK);
+    }
+
+    private static int occupant(long word, int slot) {
+        return (int) (word >>> (BITS * (slot + 1)) & MASK);
+    }
+
+    private static long withOccupant(long word, int slot, int size) {
+        int shift = BITS * (slot + 1);
+        return word & ~(MASK << shift) | ((long) size << shift);
+    }
+}
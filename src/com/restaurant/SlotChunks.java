@@ -0,0 +1,55 @@
+package com.restaurant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Grow-only storage of the seat state of the tables, in chunks of a fixed number of tables.
+ *
+ * <p>The state of a table never moves once published, so a concurrent swap on it is never lost by growing:
+ * only the list of chunks is copied, and the new list is published at once (read-copy-update).
+ * <p>The seating paths pay one more indirection for it, and never wait for a table being added.
+ *
+ * @param <C> type of a chunk, an atomic array
+ */
+final class SlotChunks<C> {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+
+    /**
+     * Creates an empty chunk for the given number of tables.
+     */
+    private final IntFunction<C> newChunk;
+    private volatile List<C> chunks = List.of();
+
+    SlotChunks(IntFunction<C> newChunk) {
+        this.newChunk = newChunk;
+    }
+
+    /**
+     * @return chunk holding the table, at {@link #offset(int)}
+     */
+    C chunk(int index) {
+        return this.chunks.get(index >>> CHUNK_BITS);
+    }
+
+    static int offset(int index) {
+        return index & (CHUNK - 1);
+    }
+
+    /**
+     * Makes room for the given number of tables; called by the single writer of the table set.
+     */
+    void ensure(int tables) {
+        var chunks = this.chunks;
+        if (chunks.size() << CHUNK_BITS < tables) {
+            var grown = new ArrayList<>(chunks);
+            while (grown.size() << CHUNK_BITS < tables) {
+                grown.add(this.newChunk.apply(CHUNK));
+            }
+            this.chunks = List.copyOf(grown);
+        }
+    }
+}
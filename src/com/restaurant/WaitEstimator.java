@@ -0,0 +1,100 @@
+package com.restaurant;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pace at which seats are freed at the tables of each size, for the wait estimates of {@link Manager#estimatedWaitNanos(int)}.
+ *
+ * <p>Rather than an average dwell time per group size, which needs the seating time of every group and a model of
+ * which groups end up at which tables, the estimate keeps the rate of freed seats per table size: by Little's law
+ * that rate is the seats taken there over their dwell time, so the turnover of the tables comes out directly,
+ * and the line ahead of a group divided by it is its wait.
+ * <p>Freed seats are counted on striped adders, so the leaving path pays no shared write.
+ * The rates are moving averages, exponentially weighted over time, folded in once per window by whichever departure
+ * or dispatcher pass comes first after it; a query is a plain read, constant-time and allocation-free.
+ * A restaurant where nobody leaves and nobody waits keeps the pace it has had last.
+ */
+final class WaitEstimator {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * Time constant of the averages, a change of pace of the restaurant shows within a few of them.
+     */
+    private static final double TAU_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final LongAdder[] freedSeats = new LongAdder[SeatIndex.MAX_SEATS + 1];
+    /**
+     * Seats freed per nano at the tables which can take a group of each size, as raw bits of doubles.
+     */
+    private final AtomicLongArray fitRates = new AtomicLongArray(WaitingLine.MAX_GROUP + 1);
+    /**
+     * Held by the thread which folds a window, the others go on without waiting for it.
+     */
+    private final AtomicBoolean folding = new AtomicBoolean();
+    private final long created;
+    private volatile long windowStart;
+    /**
+     * Guarded by {@code folding}.
+     */
+    private final double[] rates = new double[SeatIndex.MAX_SEATS + 1];
+    private final long[] folded = new long[SeatIndex.MAX_SEATS + 1];
+
+    WaitEstimator(long nanos) {
+        for (int size = 0; size <= SeatIndex.MAX_SEATS; size++) {
+            this.freedSeats[size] = new LongAdder();
+        }
+        this.created = nanos;
+        this.windowStart = nanos;
+    }
+
+    void departed(ClientsGroup group, Table table, long nanos) {
+        this.freedSeats[table.size()].add(group.size());
+        this.tick(nanos);
+    }
+
+    /**
+     * Folds the window if it is over, called on the departures and the dispatcher passes.
+     */
+    void tick(long nanos) {
+        if (nanos - this.windowStart >= WINDOW_NANOS && this.folding.compareAndSet(false, true)) {
+            try {
+                this.fold(nanos);
+            } finally {
+                this.folding.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return seats freed per nano at the tables big enough for the group, as of the last window folded
+     */
+    double freeingRate(int groupSize) {
+        return Double.longBitsToDouble(this.fitRates.get(groupSize));
+    }
+
+    /**
+     * The weight of a window is the one of a running mean while the averages are younger than their time constant,
+     * so the first estimates are not dragged towards zero.
+     */
+    private void fold(long nanos) {
+        long elapsed = nanos - this.windowStart;
+        if (elapsed < WINDOW_NANOS) {
+            return; // folded meanwhile
+        }
+        double weight = Math.max(1 - Math.exp(-elapsed / TAU_NANOS), (double) elapsed / (nanos - this.created));
+        double fitting = 0;
+        for (int size = SeatIndex.MAX_SEATS; size > 0; size--) {
+            long count = this.freedSeats[size].sum();
+            this.rates[size] += weight * ((double) (count - this.folded[size]) / elapsed - this.rates[size]);
+            this.folded[size] = count;
+            fitting += this.rates[size];
+            if (size <= WaitingLine.MAX_GROUP) {
+                this.fitRates.set(size, Double.doubleToRawLongBits(fitting));
+            }
+        }
+        this.windowStart = nanos;
+    }
+}
@@ -0,0 +1,372 @@
+package com.restaurant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The waiting line, split into one lock-free FIFO per group size.
+ *
+ * <p>Every group gets a ticket on arrival, so the arrival order across sizes is kept:
+ * the dispatcher always tries the oldest head among the sizes which can still fit.
+ * <p>Per-size counters make the fairness check of an arrival and the queue count constant-time.
+ * <p>A waiting group is claimed by whoever takes it out of the line (the dispatcher or an abandonment),
+ * so a group is never both seated and abandoned.
+ * <p>Every change of the counters is bracketed by the {@link SeqLock} of the restaurant, and so is a seat taken for a group
+ * along with its leaving the line, so a consistent read never sees a group both seated and waiting.
+ * <p>An abandoned group is only marked as taken and unlinked lazily, when it reaches the head of its queue
+ * or when the dead entries of its size outnumber the live ones, so abandonment is amortized O(1) even in a long line.
+ */
+final class WaitingLine {
+
+    static final int MAX_GROUP = Collections.max(RestUtil.CLIENT_GROUPS);
+    private static final int PURGE_SLACK = 64;
+
+    private final List<Queue<Waiting>> queues = IntStream.rangeClosed(0, MAX_GROUP)
+            .<Queue<Waiting>>mapToObj(size -> new ConcurrentLinkedQueue<>())
+            .toList();
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(MAX_GROUP + 1);
+    private final AtomicIntegerArray dead = new AtomicIntegerArray(MAX_GROUP + 1);
+    /**
+     * Waiting entry of each group, so it can be abandoned without a search.
+     */
+    private final Map<ClientsGroup, Waiting> byGroup = new ConcurrentHashMap<>();
+    private final AtomicLong tickets = new AtomicLong();
+    private final SeqLock changes;
+    /**
+     * Set by a {@link SeatingPolicy} dispatcher while a group has been bypassed too often, arrivals then queue behind it.
+     */
+    private volatile boolean starving;
+
+    WaitingLine(SeqLock changes) {
+        this.changes = changes;
+    }
+
+    /**
+     * @return handle of the waiting group, it can be abandoned through it without a search
+     * @throws IllegalStateException if an equal group is waiting already
+     */
+    Waiting offer(ClientsGroup group) {
+        var waiting = new Waiting(group, this.tickets.getAndIncrement());
+        this.changes.begin();
+        this.counts.incrementAndGet(group.size()); // counted before it is visible, so the count never goes negative
+        if (this.byGroup.compute(group, (g, previous) -> previous == null || !previous.isWaiting() ? waiting : previous) != waiting) {
+            this.counts.decrementAndGet(group.size());
+            this.changes.end(false);
+            throw new IllegalStateException("Group has already arrived");
+        }
+        this.queues.get(group.size()).offer(waiting);
+        this.changes.end(true);
+        return waiting;
+    }
+
+    boolean contains(ClientsGroup group) {
+        var waiting = this.byGroup.get(group);
+        return waiting != null && waiting.isWaiting();
+    }
+
+    /**
+     * @return whether any group of the given size or smaller is waiting
+     */
+    boolean hasWaitingUpTo(int size) {
+        for (int s = 1; s <= size; s++) {
+            if (this.counts.get(s) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return seats wanted by the waiting groups of the given size or smaller
+     */
+    int seatsWaitingUpTo(int size) {
+        int seats = 0;
+        for (int s = 1; s <= size; s++) {
+            seats += s * this.counts.get(s);
+        }
+        return seats;
+    }
+
+    /**
+     * Fills in the number of waiting groups per size, consistent only under a read of the {@link SeqLock}.
+     */
+    void counts(int[] bySize) {
+        for (int size = 1; size <= MAX_GROUP; size++) {
+            bySize[size] = this.counts.get(size);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (int s = 1; s <= MAX_GROUP; s++) {
+            size += this.counts.get(s);
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        return !this.hasWaitingUpTo(MAX_GROUP);
+    }
+
+    /**
+     * One pass of the dispatcher over the sizes up to {@code maxFit}.
+     * <p>A head which cannot be seated rules out its own size and every bigger one for the rest of the pass,
+     * since no table has that many seats left.
+     *
+     * @param onSeated called with each seated group once it has left the line
+     * @return whether anybody has been seated
+     */
+    boolean dispatch(int maxFit, Predicate<ClientsGroup> tryTakeSeat, Consumer<ClientsGroup> onSeated) {
+        int limit = Math.min(maxFit, MAX_GROUP);
+        boolean seated = false;
+        while (true) {
+            Waiting next = null;
+            for (int size = 1; size <= limit; size++) {
+                var head = this.liveHead(size);
+                if (head != null && (next == null || head.ticket < next.ticket)) {
+                    next = head;
+                }
+            }
+            if (next == null) {
+                return seated;
+            }
+            if (!next.state.compareAndSet(State.WAITING, State.CLAIMED)) {
+                continue; // abandoned in the meantime, it is being removed by the abandoning thread
+            }
+            if (this.takeSeat(next, tryTakeSeat)) {
+                this.queues.get(next.group.size()).remove(next); // it is the head, so this is O(1)
+                onSeated.accept(next.group);
+                seated = true;
+            } else {
+                next.state.set(State.WAITING);
+                limit = next.group.size() - 1;
+            }
+        }
+    }
+
+    /**
+     * The oldest waiting entries up to the given size, merged across the queues by ticket.
+     *
+     * @return at most {@code max} entries, oldest first
+     */
+    List<Waiting> window(int maxSize, int max) {
+        int limit = Math.min(maxSize, MAX_GROUP);
+        var iterators = new ArrayList<Iterator<Waiting>>(limit + 1);
+        var heads = new Waiting[limit + 1];
+        for (int size = 1; size <= limit; size++) {
+            this.liveHead(size); // leaves the stale heads out of the walk
+            iterators.add(this.queues.get(size).iterator());
+        }
+        var window = new ArrayList<Waiting>(max);
+        while (window.size() < max) {
+            int oldest = -1;
+            for (int size = 1; size <= limit; size++) {
+                if (heads[size] == null) {
+                    heads[size] = nextWaiting(iterators.get(size - 1));
+                }
+                if (heads[size] != null && (oldest < 0 || heads[size].ticket < heads[oldest].ticket)) {
+                    oldest = size;
+                }
+            }
+            if (oldest < 0) {
+                break;
+            }
+            window.add(heads[oldest]);
+            heads[oldest] = null;
+        }
+        return window;
+    }
+
+    private static Waiting nextWaiting(Iterator<Waiting> it) {
+        while (it.hasNext()) {
+            var waiting = it.next();
+            if (waiting.state.get() == State.WAITING) {
+                return waiting;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Seats a single entry of the line, wherever it stands, without waiting for anybody else's claim.
+     *
+     * @return whether it has been seated, false if it is gone or no seat could be taken
+     */
+    boolean seat(Waiting waiting, Predicate<ClientsGroup> tryTakeSeat, Consumer<ClientsGroup> onSeated) {
+        if (!waiting.state.compareAndSet(State.WAITING, State.CLAIMED)) {
+            return false;
+        }
+        if (!this.takeSeat(waiting, tryTakeSeat)) {
+            waiting.state.set(State.WAITING);
+            return false;
+        }
+        this.queues.get(waiting.group.size()).remove(waiting); // it is within the window, so close to the head
+        onSeated.accept(waiting.group);
+        return true;
+    }
+
+    /**
+     * Seats a claimed entry and takes it out of the line as one change.
+     */
+    private boolean takeSeat(Waiting waiting, Predicate<ClientsGroup> tryTakeSeat) {
+        this.changes.begin();
+        boolean seated = tryTakeSeat.test(waiting.group);
+        if (seated) {
+            this.take(waiting);
+        }
+        this.changes.end(seated);
+        return seated;
+    }
+
+    boolean isStarving() {
+        return this.starving;
+    }
+
+    void setStarving(boolean starving) {
+        if (this.starving != starving) {
+            this.starving = starving;
+        }
+    }
+
+    /**
+     * Unlinks the taken entries at the head of the queue of the size.
+     * <p>The line may have several dispatchers (see {@link ShardedRestManager}), so the entry may just as well be
+     * a group seated by another one, which is why the dead count is left alone here and only reset by a purge.
+     */
+    private Waiting liveHead(int size) {
+        var queue = this.queues.get(size);
+        var head = queue.peek();
+        while (head != null && head.state.get() == State.TAKEN) {
+            queue.remove(head);
+            head = queue.peek();
+        }
+        return head;
+    }
+
+    /**
+     * Removes the waiting group if it satisfies the condition.
+     */
+    boolean remove(ClientsGroup group, Predicate<ClientsGroup> condition) {
+        var waiting = this.byGroup.get(group);
+        return waiting != null && condition.test(waiting.group) && this.remove(waiting);
+    }
+
+    /**
+     * @return whether the group was still waiting and has been removed now
+     */
+    boolean remove(Waiting waiting) {
+        if (this.claim(waiting)) {
+            this.take(waiting);
+            this.bury(waiting.group.size());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param onRemoved called with each removed group
+     * @return number of removed groups
+     */
+    int removeIf(Predicate<ClientsGroup> condition, Consumer<ClientsGroup> onRemoved) {
+        int removed = 0;
+        for (int size = 1; size <= MAX_GROUP; size++) {
+            for (var it = this.queues.get(size).iterator(); it.hasNext(); ) {
+                var waiting = it.next();
+                if (condition.test(waiting.group) && this.claim(waiting)) {
+                    this.take(waiting);
+                    it.remove(); // the whole line is walked anyway, so it is unlinked right away
+                    onRemoved.accept(waiting.group);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Waits out a dispatcher attempt in progress, which takes as long as a single seating swap.
+     */
+    private boolean claim(Waiting waiting) {
+        while (true) {
+            if (waiting.state.compareAndSet(State.WAITING, State.CLAIMED)) {
+                return true;
+            }
+            if (waiting.state.get() == State.TAKEN) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private void take(Waiting waiting) {
+        this.changes.begin();
+        waiting.state.set(State.TAKEN);
+        this.byGroup.remove(waiting.group, waiting);
+        this.counts.decrementAndGet(waiting.group.size());
+        this.changes.end(true);
+    }
+
+    /**
+     * Leaves a taken entry in its queue, purging the queue once it may hold more dead entries than live ones.
+     * <p>The dead count only overestimates, so purges may come earlier than needed, but they stay amortized O(1).
+     */
+    private void bury(int size) {
+        if (this.dead.incrementAndGet(size) > this.counts.get(size) + PURGE_SLACK) {
+            this.dead.set(size, 0);
+            this.queues.get(size).removeIf(waiting -> waiting.state.get() == State.TAKEN);
+        }
+    }
+
+    private enum State {
+        WAITING, CLAIMED, TAKEN
+    }
+
+    /**
+     * Compared by identity, so the same group can never be confused with an equal one when it is removed.
+     */
+    static final class Waiting {
+        private final ClientsGroup group;
+        private final long ticket;
+        private final AtomicReference<State> state = new AtomicReference<>(State.WAITING);
+        /**
+         * Number of dispatcher passes which have seated a younger group instead of this one.
+         */
+        private volatile int bypassed;
+
+        private Waiting(ClientsGroup group, long ticket) {
+            this.group = group;
+            this.ticket = ticket;
+        }
+
+        ClientsGroup group() {
+            return this.group;
+        }
+
+        boolean isWaiting() {
+            return this.state.get() != State.TAKEN;
+        }
+
+        int bypassed() {
+            return this.bypassed;
+        }
+
+        /**
+         * Only the dispatcher of the line counts passes, a lost update would merely delay the starvation bound by one.
+         */
+        void bypass() {
+            this.bypassed++;
+        }
+    }
+}
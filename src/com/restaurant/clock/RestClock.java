@@ -0,0 +1,39 @@
+package com.restaurant.clock;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Strategy pattern used here, the source of time for the whole restaurant.
+ *
+ * <p>Time is a primitive, monotonic count of nanoseconds, so reading it and comparing wait limits never allocates.
+ * <p>Wall-clock time is derived from an origin pair only at the edges, when a value is shown or taken from outside.
+ */
+public abstract class RestClock {
+
+    private final long originNanos;
+    private final LocalDateTime origin;
+
+    protected RestClock(long originNanos, LocalDateTime origin) {
+        this.originNanos = originNanos;
+        this.origin = origin;
+    }
+
+    public static RestClock system() {
+        return SystemClock.INSTANCE;
+    }
+
+    /**
+     * @return monotonic nanoseconds, only differences of two values are meaningful
+     */
+    abstract public long nanos();
+
+    public LocalDateTime toDateTime(long nanos) {
+        return this.origin.plusNanos(nanos - this.originNanos);
+    }
+
+    public long toNanos(LocalDateTime dateTime) {
+        return this.originNanos + Duration.between(this.origin, dateTime).toNanos();
+    }
+
+}
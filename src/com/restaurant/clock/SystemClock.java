@@ -0,0 +1,21 @@
+package com.restaurant.clock;
+
+import java.time.LocalDateTime;
+
+/**
+ * Backed by {@link System#nanoTime()}, which is monotonic, unlike the wall clock.
+ */
+public final class SystemClock extends RestClock {
+
+    static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {
+        super(System.nanoTime(), LocalDateTime.now());
+    }
+
+    @Override
+    public long nanos() {
+        return System.nanoTime();
+    }
+
+}
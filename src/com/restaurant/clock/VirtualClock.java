@@ -0,0 +1,37 @@
+package com.restaurant.clock;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Moves only when it is told to, for simulations and benchmarks.
+ * <p>It starts at 0 nanoseconds, which corresponds to {@code origin}.
+ */
+public final class VirtualClock extends RestClock {
+
+    private volatile long now;
+
+    public VirtualClock(LocalDateTime origin) {
+        super(0, origin);
+    }
+
+    @Override
+    public long nanos() {
+        return this.now;
+    }
+
+    /**
+     * Moves the clock forward, it is never moved backwards.
+     */
+    public void setNanos(long nanos) {
+        if (nanos < this.now) {
+            throw new IllegalArgumentException("Clock cannot go backwards");
+        }
+        this.now = nanos;
+    }
+
+    public void advance(Duration duration) {
+        this.setNanos(this.now + duration.toNanos());
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.restaurant.exception;
+
+public class AbandonedException extends RuntimeException {
+
+    public AbandonedException(String message){
+        super(message);
+    }
+
+}
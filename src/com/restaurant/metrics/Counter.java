@@ -0,0 +1,33 @@
+package com.restaurant.metrics;
+
+/**
+ * Events counted by {@link RestMetrics}.
+ */
+public enum Counter {
+    ARRIVED,
+    SEATED_ON_ARRIVAL,
+    QUEUED,
+    SEATED_FROM_QUEUE,
+    LEFT,
+    /**
+     * Abandoned through the {@link com.restaurant.Manager} API.
+     */
+    ABANDONED,
+    /**
+     * Abandoned automatically after the max wait.
+     */
+    EXPIRED,
+    /**
+     * Failed seat swaps and stale hints of the capacity index, on arrivals, departures and dispatcher passes alike.
+     */
+    SEAT_RETRIES,
+    DISPATCH_PASSES,
+    /**
+     * Dispatcher passes of a shard which have seated waiting groups of other shards.
+     */
+    STOLEN,
+    /**
+     * Passes which have seated nobody, after which the dispatcher consults its wait strategy.
+     */
+    DISPATCH_IDLE
+}
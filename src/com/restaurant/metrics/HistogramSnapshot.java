@@ -0,0 +1,10 @@
+package com.restaurant.metrics;
+
+/**
+ * Summary of a latency histogram, every value in nanoseconds.
+ * <p>Percentiles are upper bounds of their buckets, so they overstate by at most 12.5%.
+ */
+public record HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+
+    public static final HistogramSnapshot EMPTY = new HistogramSnapshot(0, 0, 0, 0, 0, 0, 0);
+}
@@ -0,0 +1,84 @@
+package com.restaurant.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of nanosecond durations.
+ *
+ * <p>Every power of two is split into 8 linear buckets, so a recorded value is off by at most 12.5%
+ * and the whole range of a {@code long} fits into 488 buckets.
+ * <p>Recording is one bucket increment and one striped add, it neither locks nor allocates.
+ * <p>Public, so the load driver of the benchmarks records its latencies on the same buckets.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.buckets.getAndIncrement(index(value));
+        this.total.add(value);
+        if (value > this.max.get()) { // a plain read first, the maximum hardly ever changes
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) (value >>> (exponent - SUB_BITS) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the biggest value falling into the bucket
+     */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Not atomic as a whole: values recorded meanwhile may be counted in some of the figures only.
+     */
+    public HistogramSnapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            count += counts[i];
+        }
+        long max = this.max.get();
+        if (count == 0) {
+            return HistogramSnapshot.EMPTY;
+        }
+        return new HistogramSnapshot(count, (double) this.total.sum() / count,
+                percentile(counts, count, 0.5, max), percentile(counts, count, 0.9, max),
+                percentile(counts, count, 0.99, max), percentile(counts, count, 0.999, max), max);
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long max) {
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+}
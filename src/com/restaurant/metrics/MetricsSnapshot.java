@@ -0,0 +1,30 @@
+package com.restaurant.metrics;
+
+import java.util.Map;
+
+/**
+ * Point-in-time view of a restaurant, see {@link RestMetrics}.
+ *
+ * @param enabled      whether the counters and histograms are recorded at all, the gauges are always there
+ * @param counters     every counter, all zero while metrics are switched off
+ * @param waitTime     time from arrival to seating of the groups which had to queue
+ * @param dispatchPass duration of a dispatcher pass
+ * @param queueLength  waiting groups
+ * @param seatedSeats  occupied seats
+ * @param totalSeats   seats of all tables
+ */
+public record MetricsSnapshot(boolean enabled, Map<Counter, Long> counters, HistogramSnapshot waitTime, HistogramSnapshot dispatchPass,
+                              int queueLength, int seatedSeats, int totalSeats) {
+
+    public MetricsSnapshot {
+        counters = Map.copyOf(counters);
+    }
+
+    public long count(Counter counter) {
+        return this.counters.getOrDefault(counter, 0L);
+    }
+
+    public double utilization() {
+        return this.totalSeats == 0 ? 0 : (double) this.seatedSeats / this.totalSeats;
+    }
+}
@@ -0,0 +1,212 @@
+package com.restaurant.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Recording side of the metrics of one restaurant.
+ *
+ * <p>Counters are {@link LongAdder}s, striped over the contending threads, so counting on the seating paths costs a few nanoseconds
+ * and never turns into a shared hot spot.
+ * <p>Only the dispatcher records durations, the hot paths of arrivals and departures only count.
+ * <p>A disabled instance holds nothing and every call returns right away on a single, well-predicted branch.
+ */
+public final class RestMetrics {
+
+    private static final RestMetrics DISABLED = new RestMetrics(false);
+
+    private final LongAdder[] counters;
+    private final LatencyHistogram waitTime;
+    private final LatencyHistogram dispatchPass;
+
+    private RestMetrics(boolean enabled) {
+        this.counters = enabled ? Arrays.stream(Counter.values()).map(c -> new LongAdder()).toArray(LongAdder[]::new) : null;
+        this.waitTime = enabled ? new LatencyHistogram() : null;
+        this.dispatchPass = enabled ? new LatencyHistogram() : null;
+    }
+
+    public static RestMetrics enabled() {
+        return new RestMetrics(true);
+    }
+
+    public static RestMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return this.counters != null;
+    }
+
+    public void count(Counter counter) {
+        if (this.counters != null) {
+            this.counters[counter.ordinal()].increment();
+        }
+    }
+
+    public void count(Counter counter, long times) {
+        if (this.counters != null) {
+            this.counters[counter.ordinal()].add(times);
+        }
+    }
+
+    public void recordWait(long nanos) {
+        if (this.waitTime != null) {
+            this.waitTime.record(nanos);
+        }
+    }
+
+    /**
+     * @return start of a dispatcher pass for {@link #recordDispatchPass(long)}, the clock is not read while disabled
+     */
+    public long dispatchPassStart() {
+        return this.dispatchPass != null ? System.nanoTime() : 0;
+    }
+
+    public void recordDispatchPass(long startNanos) {
+        if (this.dispatchPass != null) {
+            this.dispatchPass.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * The gauges are passed in by the owner, which keeps them anyway.
+     */
+    public MetricsSnapshot snapshot(int queueLength, int seatedSeats, int totalSeats) {
+        var counts = new EnumMap<Counter, Long>(Counter.class);
+        for (var counter : Counter.values()) {
+            counts.put(counter, this.counters == null ? 0L : this.counters[counter.ordinal()].sum());
+        }
+        return new MetricsSnapshot(this.isEnabled(), counts,
+                this.waitTime == null ? HistogramSnapshot.EMPTY : this.waitTime.snapshot(),
+                this.dispatchPass == null ? HistogramSnapshot.EMPTY : this.dispatchPass.snapshot(),
+                queueLength, seatedSeats, totalSeats);
+    }
+
+    /**
+     * Registers a {@link RestMetricsMBean} under {@code com.restaurant:type=RestMetrics,name=<name>} on the platform MBean server.
+     * <p>Every attribute read takes a fresh snapshot, so JMX clients cost nothing until they poll.
+     *
+     * @throws IllegalArgumentException if the name is malformed or already registered
+     */
+    public static ObjectName register(String name, Supplier<MetricsSnapshot> snapshots) {
+        try {
+            var objectName = new ObjectName("com.restaurant:type=RestMetrics,name=" + ObjectName.quote(name));
+            var mBean = new StandardMBean(new SnapshotMBean(snapshots), RestMetricsMBean.class);
+            return ManagementFactory.getPlatformMBeanServer().registerMBean(mBean, objectName).getObjectName();
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register metrics " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot unregister metrics " + objectName, e);
+        }
+    }
+
+    private record SnapshotMBean(Supplier<MetricsSnapshot> snapshots) implements RestMetricsMBean {
+
+        @Override
+        public boolean isEnabled() {
+            return this.snapshots.get().enabled();
+        }
+
+        @Override
+        public long getArrived() {
+            return this.snapshots.get().count(Counter.ARRIVED);
+        }
+
+        @Override
+        public long getSeatedOnArrival() {
+            return this.snapshots.get().count(Counter.SEATED_ON_ARRIVAL);
+        }
+
+        @Override
+        public long getSeatedFromQueue() {
+            return this.snapshots.get().count(Counter.SEATED_FROM_QUEUE);
+        }
+
+        @Override
+        public long getLeft() {
+            return this.snapshots.get().count(Counter.LEFT);
+        }
+
+        @Override
+        public long getAbandoned() {
+            return this.snapshots.get().count(Counter.ABANDONED);
+        }
+
+        @Override
+        public long getExpired() {
+            return this.snapshots.get().count(Counter.EXPIRED);
+        }
+
+        @Override
+        public long getSeatRetries() {
+            return this.snapshots.get().count(Counter.SEAT_RETRIES);
+        }
+
+        @Override
+        public long getDispatchPasses() {
+            return this.snapshots.get().count(Counter.DISPATCH_PASSES);
+        }
+
+        @Override
+        public long getDispatchIdle() {
+            return this.snapshots.get().count(Counter.DISPATCH_IDLE);
+        }
+
+        @Override
+        public long getStolen() {
+            return this.snapshots.get().count(Counter.STOLEN);
+        }
+
+        @Override
+        public int getQueueLength() {
+            return this.snapshots.get().queueLength();
+        }
+
+        @Override
+        public int getSeatedSeats() {
+            return this.snapshots.get().seatedSeats();
+        }
+
+        @Override
+        public double getUtilization() {
+            return this.snapshots.get().utilization();
+        }
+
+        @Override
+        public double getWaitMeanNanos() {
+            return this.snapshots.get().waitTime().mean();
+        }
+
+        @Override
+        public long getWaitP50Nanos() {
+            return this.snapshots.get().waitTime().p50();
+        }
+
+        @Override
+        public long getWaitP99Nanos() {
+            return this.snapshots.get().waitTime().p99();
+        }
+
+        @Override
+        public long getWaitMaxNanos() {
+            return this.snapshots.get().waitTime().max();
+        }
+
+        @Override
+        public long getDispatchPassP99Nanos() {
+            return this.snapshots.get().dispatchPass().p99();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.restaurant.metrics;
+
+/**
+ * JMX view of a restaurant, registered by {@link RestMetrics#register(String, java.util.function.Supplier)}.
+ * <p>Durations are in nanoseconds.
+ */
+public interface RestMetricsMBean {
+
+    boolean isEnabled();
+
+    long getArrived();
+
+    long getSeatedOnArrival();
+
+    long getSeatedFromQueue();
+
+    long getLeft();
+
+    long getAbandoned();
+
+    long getExpired();
+
+    long getSeatRetries();
+
+    long getDispatchPasses();
+
+    long getDispatchIdle();
+
+    long getStolen();
+
+    int getQueueLength();
+
+    int getSeatedSeats();
+
+    double getUtilization();
+
+    double getWaitMeanNanos();
+
+    long getWaitP50Nanos();
+
+    long getWaitP99Nanos();
+
+    long getWaitMaxNanos();
+
+    long getDispatchPassP99Nanos();
+}
@@ -0,0 +1,33 @@
+package com.restaurant.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers of one selector loop, reused from one connection to the next.
+ *
+ * <p>Direct buffers are slow to allocate and are freed only by the garbage collector, so a server which accepts
+ * many short connections would otherwise keep allocating native memory. Only the loop thread uses its pool, so there is no lock.
+ */
+final class BufferPool {
+
+    private final int bufferSize;
+    private final int maxIdle;
+    private final ArrayDeque<ByteBuffer> idle = new ArrayDeque<>();
+
+    BufferPool(int bufferSize, int maxIdle) {
+        this.bufferSize = bufferSize;
+        this.maxIdle = maxIdle;
+    }
+
+    ByteBuffer take() {
+        var buffer = this.idle.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(this.bufferSize) : buffer;
+    }
+
+    void give(ByteBuffer buffer) {
+        if (this.idle.size() < this.maxIdle) {
+            this.idle.push(buffer.clear());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.restaurant.net;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.exception.ClientNumberException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol of the restaurant server, in network byte order.
+ *
+ * <p>A request is an op code and a payload whose length is fixed by the op, so frames need no length prefix:
+ * a group is its size in a byte and its arrival nanos in a long, a wait limit is a long of nanos.
+ * <p>Each request gets exactly one reply, in the order of the requests, so a client may send many requests before reading:
+ * a reply is a status byte, followed by the result of the op when it is {@link #OK},
+ * or by the message of the failure as a short length and UTF-8 bytes otherwise.
+ */
+final class Protocol {
+
+    static final byte ARRIVE = 1;
+    /**
+     * Arrival stamped by the clock of the server, the reply is the arrival nanos of the group.
+     */
+    static final byte ARRIVE_NOW = 2;
+    static final byte LEAVE = 3;
+    /**
+     * The reply is the size of the table, or 0 if the group is not seated.
+     */
+    static final byte LOOKUP = 4;
+    static final byte ABANDON = 5;
+    static final byte ABANDON_IF = 6;
+    static final byte ABANDON_ALL_IF = 7;
+    static final byte QUEUE_COUNT = 8;
+    static final byte SEAT_COUNT = 9;
+    /**
+     * A group size, the reply is the estimate in nanos as a long.
+     */
+    static final byte ESTIMATED_WAIT = 10;
+
+    static final byte OK = 0;
+    static final byte ILLEGAL_STATE = 1;
+    static final byte ILLEGAL_ARGUMENT = 2;
+    static final byte CLIENT_NUMBER = 3;
+    static final byte FAILED = 4;
+
+    static final int GROUP = 1 + Long.BYTES;
+    static final int MAX_REQUEST = 1 + GROUP + Long.BYTES;
+    /**
+     * Characters of a failure message which are sent, 3 bytes each at most in UTF-8.
+     */
+    private static final int MAX_MESSAGE = 80;
+    static final int MAX_REPLY = 1 + Short.BYTES + 3 * MAX_MESSAGE;
+
+    private Protocol() {
+    }
+
+    /**
+     * @return length of the request, op included, or -1 for an unknown op
+     */
+    static int requestLength(byte op) {
+        return switch (op) {
+            case ARRIVE, LEAVE, LOOKUP, ABANDON -> 1 + GROUP;
+            case ARRIVE_NOW, ESTIMATED_WAIT -> 2;
+            case ABANDON_IF -> 1 + GROUP + Long.BYTES;
+            case ABANDON_ALL_IF -> 1 + Long.BYTES;
+            case QUEUE_COUNT, SEAT_COUNT -> 1;
+            default -> -1;
+        };
+    }
+
+    static ByteBuffer putGroup(ByteBuffer buffer, ClientsGroup group) {
+        return buffer.put((byte) group.size()).putLong(group.arrivalNanos());
+    }
+
+    static ClientsGroup getGroup(ByteBuffer buffer) {
+        int size = buffer.get();
+        long arrivalNanos = buffer.getLong();
+        return new ClientsGroup(size, arrivalNanos);
+    }
+
+    static void putFailure(ByteBuffer buffer, RuntimeException failure) {
+        byte status;
+        if (failure instanceof ClientNumberException) {
+            status = CLIENT_NUMBER;
+        } else if (failure instanceof IllegalArgumentException) {
+            status = ILLEGAL_ARGUMENT;
+        } else if (failure instanceof IllegalStateException) {
+            status = ILLEGAL_STATE;
+        } else {
+            status = FAILED;
+        }
+        var message = failure.getMessage() == null ? "" : failure.getMessage();
+        if (message.length() > MAX_MESSAGE) {
+            message = message.substring(0, MAX_MESSAGE);
+        }
+        var bytes = message.getBytes(StandardCharsets.UTF_8);
+        buffer.put(status).putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * @param status a failure status, which has been read already
+     */
+    static RuntimeException getFailure(byte status, ByteBuffer buffer) {
+        var bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        var message = bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+        return switch (status) {
+            case ILLEGAL_STATE -> new IllegalStateException(message);
+            case ILLEGAL_ARGUMENT -> new IllegalArgumentException(message);
+            case CLIENT_NUMBER -> new ClientNumberException(message);
+            default -> new IllegalStateException("Server has failed: " + message);
+        };
+    }
+}
@@ -0,0 +1,295 @@
+package com.restaurant.net;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.Manager;
+import com.restaurant.Table;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link Manager} of a host terminal, served by a {@link RestServer}; each call is one round trip.
+ *
+ * <p>{@link #pipeline()} sends many requests in one write and reads their replies in one go,
+ * and {@link #onArriveAll}/{@link #onLeaveAll} go that way too.
+ * <p>The calls of a client are serialized, one client per terminal thread avoids waiting behind another thread.
+ * Closing the client leaves the restaurant of the server open.
+ */
+public final class RestClient implements Manager {
+
+    /**
+     * Requests pipelined before they are sent anyway, so the replies the server holds for an unread client stay bounded.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE).flip();
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+    public RestClient(InetSocketAddress address) {
+        try {
+            this.channel = SocketChannel.open(address);
+            this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Requests which are only sent by {@link Pipeline#sync()}, their futures are completed by it in the order of the requests.
+     */
+    public Pipeline pipeline() {
+        return new Pipeline();
+    }
+
+    public final class Pipeline {
+
+        private Pipeline() {
+        }
+
+        public CompletableFuture<Void> onArrive(ClientsGroup group) {
+            return RestClient.this.send(Protocol.ARRIVE, group, 0);
+        }
+
+        /**
+         * Arrival on the clock of the server, so the group can be abandoned on wait limits there.
+         */
+        public CompletableFuture<ClientsGroup> arriveNow(int size) {
+            CompletableFuture<Long> arrival = RestClient.this.send(Protocol.ARRIVE_NOW, new ClientsGroup(size, 0), 0);
+            return arrival.thenApply(nanos -> new ClientsGroup(size, nanos));
+        }
+
+        public CompletableFuture<Void> onLeave(ClientsGroup group) {
+            return RestClient.this.send(Protocol.LEAVE, group, 0);
+        }
+
+        /**
+         * Completed with null if the group is not seated.
+         */
+        public CompletableFuture<Table> lookup(ClientsGroup group) {
+            return RestClient.this.send(Protocol.LOOKUP, group, 0);
+        }
+
+        public CompletableFuture<Boolean> abandonQueue(ClientsGroup group) {
+            return RestClient.this.send(Protocol.ABANDON, group, 0);
+        }
+
+        public CompletableFuture<Boolean> abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+            return RestClient.this.send(Protocol.ABANDON_IF, group, waitLimit.toNanos());
+        }
+
+        public CompletableFuture<Boolean> abandonAllIf(Duration waitLimit) {
+            return RestClient.this.send(Protocol.ABANDON_ALL_IF, null, waitLimit.toNanos());
+        }
+
+        public CompletableFuture<Long> estimatedWaitNanos(int groupSize) {
+            return RestClient.this.send(Protocol.ESTIMATED_WAIT, null, groupSize);
+        }
+
+        /**
+         * Sends the requests and waits for all their replies.
+         */
+        public void sync() {
+            RestClient.this.sync();
+        }
+    }
+
+    @Override
+    public void onArrive(ClientsGroup group) {
+        this.call(Protocol.ARRIVE, group, 0);
+    }
+
+    public ClientsGroup arriveNow(int size) {
+        return new ClientsGroup(size, this.<Long>call(Protocol.ARRIVE_NOW, new ClientsGroup(size, 0), 0));
+    }
+
+    @Override
+    public void onLeave(ClientsGroup group) {
+        this.call(Protocol.LEAVE, group, 0);
+    }
+
+    /**
+     * Pipelined, and served as one burst by the server; fails with the first failure, after every arrival has been tried.
+     */
+    @Override
+    public synchronized void onArriveAll(Collection<ClientsGroup> groups) {
+        this.all(Protocol.ARRIVE, groups);
+    }
+
+    /**
+     * Pipelined; fails with the first failure, after every departure has been tried.
+     */
+    @Override
+    public synchronized void onLeaveAll(Collection<ClientsGroup> groups) {
+        this.all(Protocol.LEAVE, groups);
+    }
+
+    private void all(byte op, Collection<ClientsGroup> groups) {
+        var futures = new ArrayDeque<CompletableFuture<Object>>();
+        for (var group : groups) {
+            futures.add(this.send(op, group, 0));
+        }
+        this.sync();
+        futures.forEach(RestClient::result);
+    }
+
+    @Override
+    public Table lookup(ClientsGroup group) {
+        return this.call(Protocol.LOOKUP, group, 0);
+    }
+
+    @Override
+    public boolean abandonQueue(ClientsGroup group) {
+        return this.<Boolean>call(Protocol.ABANDON, group, 0);
+    }
+
+    @Override
+    public boolean abandonQueueIf(ClientsGroup group, Duration waitLimit) {
+        return this.<Boolean>call(Protocol.ABANDON_IF, group, waitLimit.toNanos());
+    }
+
+    @Override
+    public boolean abandonAllIf(Duration waitLimit) {
+        return this.<Boolean>call(Protocol.ABANDON_ALL_IF, null, waitLimit.toNanos());
+    }
+
+    @Override
+    public long estimatedWaitNanos(int groupSize) {
+        return this.<Long>call(Protocol.ESTIMATED_WAIT, null, groupSize);
+    }
+
+    @Override
+    public int getQueueCount() {
+        return this.<Integer>call(Protocol.QUEUE_COUNT, null, 0);
+    }
+
+    @Override
+    public int getSeatCount() {
+        return this.<Integer>call(Protocol.SEAT_COUNT, null, 0);
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized <T> T call(byte op, ClientsGroup group, long argument) {
+        CompletableFuture<T> future = this.send(op, group, argument);
+        this.sync();
+        return result(future);
+    }
+
+    private static <T> T result(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException failure ? failure : e;
+        }
+    }
+
+    /**
+     * Queues the request, and sends the ones queued so far if the buffer is full.
+     *
+     * @param argument wait limit in nanos, or size of the group of a wait estimate
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> CompletableFuture<T> send(byte op, ClientsGroup group, long argument) {
+        if (this.out.remaining() < Protocol.MAX_REQUEST) {
+            this.sync();
+        }
+        this.out.put(op);
+        switch (op) {
+            case Protocol.ARRIVE_NOW -> this.out.put((byte) group.size());
+            case Protocol.ESTIMATED_WAIT -> this.out.put((byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, argument))); // kept invalid for the server
+            case Protocol.ABANDON_IF -> Protocol.putGroup(this.out, group).putLong(argument);
+            case Protocol.ABANDON_ALL_IF -> this.out.putLong(argument);
+            case Protocol.QUEUE_COUNT, Protocol.SEAT_COUNT -> {
+            }
+            default -> Protocol.putGroup(this.out, group);
+        }
+        var future = new CompletableFuture<>();
+        this.pending.add(new Pending(op, future));
+        return (CompletableFuture<T>) future;
+    }
+
+    private synchronized void sync() {
+        try {
+            this.out.flip();
+            while (this.out.hasRemaining()) {
+                this.channel.write(this.out);
+            }
+            this.out.clear();
+            Pending next;
+            while ((next = this.pending.poll()) != null) {
+                this.receive(next);
+            }
+        } catch (IOException e) {
+            var failure = new UncheckedIOException(e);
+            this.pending.forEach(request -> request.future.completeExceptionally(failure));
+            this.pending.clear();
+            throw failure;
+        }
+    }
+
+    private void receive(Pending request) throws IOException {
+        this.need(1);
+        byte status = this.in.get();
+        if (status != Protocol.OK) {
+            this.need(Short.BYTES);
+            this.need(Short.BYTES + this.in.getShort(this.in.position()));
+            request.future.completeExceptionally(Protocol.getFailure(status, this.in));
+            return;
+        }
+        request.future.complete(switch (request.op) {
+            case Protocol.ARRIVE_NOW, Protocol.ESTIMATED_WAIT -> {
+                this.need(Long.BYTES);
+                yield this.in.getLong();
+            }
+            case Protocol.LOOKUP -> {
+                this.need(1);
+                int size = this.in.get();
+                yield size == 0 ? null : new Table(size);
+            }
+            case Protocol.ABANDON, Protocol.ABANDON_IF, Protocol.ABANDON_ALL_IF -> {
+                this.need(1);
+                yield this.in.get() != 0;
+            }
+            case Protocol.QUEUE_COUNT, Protocol.SEAT_COUNT -> {
+                this.need(Integer.BYTES);
+                yield this.in.getInt();
+            }
+            default -> null;
+        });
+    }
+
+    private void need(int bytes) throws IOException {
+        if (this.in.remaining() >= bytes) {
+            return;
+        }
+        this.in.compact();
+        while (this.in.position() < bytes) {
+            if (this.channel.read(this.in) < 0) {
+                throw new EOFException("Server has closed the connection");
+            }
+        }
+        this.in.flip();
+    }
+
+    private record Pending(byte op, CompletableFuture<Object> future) {
+    }
+}
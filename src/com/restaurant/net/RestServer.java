@@ -0,0 +1,422 @@
+package com.restaurant.net;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.Manager;
+import com.restaurant.RestManager;
+import com.restaurant.RestUtil;
+import com.restaurant.Table;
+import com.restaurant.clock.RestClock;
+import com.restaurant.wait.ParkOnWait;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Network front-end of one {@link Manager}, so many host terminals share one seating engine; see {@link Protocol}.
+ *
+ * <p>A few selector loops serve all the connections, each connection staying on the loop it has been handed to;
+ * the first loop also accepts. The manager is called right on the loop thread, its calls are short and never wait for a seat.
+ * <p>Every request read at once is served before the replies are written at once, so pipelined requests cost one write.
+ * Consecutive arrivals among them are handed to {@link Manager#onArriveAll} as one burst.
+ * <p>A connection whose replies are not read stops being read, so a slow terminal holds up neither its loop nor the server's memory.
+ */
+public final class RestServer implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_IDLE_BUFFERS = 64;
+
+    private final Manager manager;
+    private final RestClock clock;
+    private final ServerSocketChannel server;
+    private final List<Loop> loops = new ArrayList<>();
+    private volatile boolean running = true;
+    private int nextLoop;
+
+    public RestServer(Manager manager, InetSocketAddress address) {
+        this(manager, address, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), RestClock.system());
+    }
+
+    /**
+     * Binds the address and starts serving.
+     *
+     * @param clock stamps the arrivals of {@link RestClient#arriveNow(int)}, the one of the manager
+     */
+    public RestServer(Manager manager, InetSocketAddress address, int selectorThreads, RestClock clock) {
+        if (selectorThreads <= 0) {
+            throw new IllegalArgumentException("At least one selector thread is required");
+        }
+        this.manager = manager;
+        this.clock = clock;
+        try {
+            this.server = ServerSocketChannel.open().bind(address);
+            this.server.configureBlocking(false);
+            for (int i = 0; i < selectorThreads; i++) {
+                this.loops.add(new Loop(i));
+            }
+            this.server.register(this.loops.get(0).selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.loops.forEach(loop -> loop.thread.start());
+    }
+
+    /**
+     * Serves a lock-free restaurant until the process is stopped.
+     * <p>Usage: {@code RestServer [--port=<n>] [--selectors=<n>] <layout>}, with a layout like {@code 2x10,4x8,6x2}.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int port = 7070;
+        int selectors = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        String layout = null;
+        for (var arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--selectors=")) {
+                selectors = Integer.parseInt(arg.substring("--selectors=".length()));
+            } else {
+                layout = arg;
+            }
+        }
+        if (layout == null) {
+            throw new IllegalArgumentException("A layout is required");
+        }
+        var manager = new RestManager(RestUtil.parseLayout(layout), true, new ParkOnWait());
+        var server = new RestServer(manager, new InetSocketAddress(port), selectors, RestClock.system());
+        System.out.println("Serving " + layout + " on " + server.address());
+        Thread.currentThread().join();
+    }
+
+    public InetSocketAddress address() {
+        try {
+            return (InetSocketAddress) this.server.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stops the loops and drops every connection, the manager is left open.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        this.loops.forEach(loop -> loop.selector.wakeup());
+        for (var loop : this.loops) {
+            try {
+                loop.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeQuietly(this.server);
+    }
+
+    /**
+     * Called on the first loop only; a connection which cannot be set up is dropped, the server keeps accepting.
+     */
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = this.server.accept();
+            } catch (IOException e) {
+                return; // e.g. out of file descriptors for now, tried again on the next select
+            }
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                closeQuietly(channel);
+                continue;
+            }
+            var loop = this.loops.get(this.nextLoop++ % this.loops.size());
+            loop.accepted.add(channel);
+            loop.selector.wakeup();
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // nothing is left to be done with it
+        }
+    }
+
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+        private final BufferPool buffers = new BufferPool(BUFFER_SIZE, MAX_IDLE_BUFFERS);
+        /**
+         * Burst of arrivals being read, reused from one read to the next.
+         */
+        private final List<ClientsGroup> arrivals = new ArrayList<>();
+        private final Burst burst = new Burst();
+
+        Loop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "rest-server-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (RestServer.this.running) {
+                    this.selector.select();
+                    SocketChannel channel;
+                    while ((channel = this.accepted.poll()) != null) {
+                        var connection = new Connection(channel, this);
+                        connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+                    }
+                    for (var key : this.selector.selectedKeys()) {
+                        if (key.isValid() && key.isAcceptable()) {
+                            RestServer.this.accept();
+                        } else if (key.isValid() && key.attachment() instanceof Connection connection) {
+                            connection.ready();
+                        }
+                    }
+                    this.selector.selectedKeys().clear();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // the loop stops with the server
+            } finally {
+                for (var key : this.selector.keys()) {
+                    if (key.attachment() instanceof Connection connection) {
+                        connection.close();
+                    }
+                }
+                this.accepted.forEach(RestServer::closeQuietly);
+                closeQuietly(this.selector);
+            }
+        }
+    }
+
+    /**
+     * View of a burst of arrivals which tells how far the manager has got through it.
+     */
+    private static final class Burst extends AbstractList<ClientsGroup> {
+        private List<ClientsGroup> arrivals;
+        /**
+         * Number of groups read by the manager so far, the one it has failed on included.
+         */
+        private int handedOut;
+
+        void reset(List<ClientsGroup> arrivals) {
+            this.arrivals = arrivals;
+            this.handedOut = 0;
+        }
+
+        @Override
+        public ClientsGroup get(int index) {
+            this.handedOut = Math.max(this.handedOut, index + 1);
+            return this.arrivals.get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.arrivals.size();
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final Loop loop;
+        private final ByteBuffer in;
+        private final ByteBuffer out;
+        private SelectionKey key;
+
+        Connection(SocketChannel channel, Loop loop) {
+            this.channel = channel;
+            this.loop = loop;
+            this.in = loop.buffers.take();
+            this.out = loop.buffers.take();
+        }
+
+        void ready() {
+            try {
+                if (this.key.isWritable()) {
+                    this.write();
+                }
+                if (this.key.isReadable() && this.channel.read(this.in) < 0) {
+                    this.close();
+                    return;
+                }
+                boolean blocked;
+                do {
+                    blocked = this.serve();
+                    this.write();
+                } while (blocked && this.out.position() == 0);
+                this.key.interestOps((blocked ? 0 : SelectionKey.OP_READ) | (this.out.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            } catch (IOException | RuntimeException e) {
+                this.close(); // a peer gone or speaking another protocol
+            }
+        }
+
+        /**
+         * Serves the whole requests read so far, as long as their replies fit.
+         *
+         * @return whether a whole request is left, for want of room for its reply
+         */
+        private boolean serve() {
+            var arrivals = this.loop.arrivals;
+            boolean blocked = false;
+            this.in.flip();
+            while (this.in.hasRemaining()) {
+                if (this.out.remaining() < (arrivals.size() + 1) * Protocol.MAX_REPLY) {
+                    blocked = true;
+                    break;
+                }
+                byte op = this.in.get(this.in.position());
+                int length = Protocol.requestLength(op);
+                if (length < 0) {
+                    throw new IllegalStateException("Unknown op " + op);
+                }
+                if (this.in.remaining() < length) {
+                    break;
+                }
+                int next = this.in.position() + length;
+                this.in.get();
+                if (op == Protocol.ARRIVE) {
+                    try {
+                        arrivals.add(Protocol.getGroup(this.in));
+                    } catch (RuntimeException e) {
+                        this.arriveAll(arrivals);
+                        Protocol.putFailure(this.out, e);
+                    }
+                } else {
+                    this.arriveAll(arrivals);
+                    this.handle(op);
+                }
+                this.in.position(next);
+            }
+            this.arriveAll(arrivals);
+            this.in.compact();
+            return blocked;
+        }
+
+        /**
+         * A failed burst is continued group by group, so only the group at fault gets a failure:
+         * the groups handed to the manager before it have arrived, see {@link Manager#onArriveAll}.
+         */
+        private void arriveAll(List<ClientsGroup> arrivals) {
+            if (arrivals.isEmpty()) {
+                return;
+            }
+            var burst = this.loop.burst;
+            burst.reset(arrivals);
+            int handedOut = arrivals.size();
+            RuntimeException failure = null;
+            try {
+                RestServer.this.manager.onArriveAll(burst);
+            } catch (RuntimeException e) {
+                handedOut = burst.handedOut;
+                failure = e;
+            }
+            int arrived = failure == null ? handedOut : Math.max(0, handedOut - 1);
+            for (int i = 0; i < arrived; i++) {
+                this.out.put(Protocol.OK);
+            }
+            if (failure != null) {
+                if (handedOut > 0) {
+                    Protocol.putFailure(this.out, failure);
+                }
+                for (var group : arrivals.subList(handedOut, arrivals.size())) {
+                    try {
+                        RestServer.this.manager.onArrive(group);
+                        this.out.put(Protocol.OK);
+                    } catch (RuntimeException e) {
+                        Protocol.putFailure(this.out, e);
+                    }
+                }
+            }
+            arrivals.clear();
+        }
+
+        private void handle(byte op) {
+            var manager = RestServer.this.manager;
+            try {
+                switch (op) {
+                    case Protocol.ARRIVE_NOW -> {
+                        var group = new ClientsGroup(this.in.get(), RestServer.this.clock.nanos());
+                        manager.onArrive(group);
+                        this.putLong(group.arrivalNanos());
+                    }
+                    case Protocol.LEAVE -> {
+                        manager.onLeave(Protocol.getGroup(this.in));
+                        this.out.put(Protocol.OK);
+                    }
+                    case Protocol.LOOKUP -> {
+                        Table table = manager.lookup(Protocol.getGroup(this.in));
+                        this.putByte(table == null ? 0 : table.size());
+                    }
+                    case Protocol.ABANDON -> this.putBoolean(manager.abandonQueue(Protocol.getGroup(this.in)));
+                    case Protocol.ABANDON_IF -> {
+                        var group = Protocol.getGroup(this.in);
+                        this.putBoolean(manager.abandonQueueIf(group, Duration.ofNanos(this.in.getLong())));
+                    }
+                    case Protocol.ABANDON_ALL_IF -> this.putBoolean(manager.abandonAllIf(Duration.ofNanos(this.in.getLong())));
+                    case Protocol.QUEUE_COUNT -> this.putInt(manager.getQueueCount());
+                    case Protocol.SEAT_COUNT -> this.putInt(manager.getSeatCount());
+                    case Protocol.ESTIMATED_WAIT -> this.putLong(manager.estimatedWaitNanos(this.in.get()));
+                    default -> throw new IllegalStateException("Unknown op " + op);
+                }
+            } catch (RuntimeException e) {
+                Protocol.putFailure(this.out, e);
+            }
+        }
+
+        /**
+         * The result is computed before its reply is begun, so a failing call leaves no half reply behind.
+         */
+        private void putBoolean(boolean value) {
+            this.putByte(value ? 1 : 0);
+        }
+
+        private void putByte(int value) {
+            this.out.put(Protocol.OK).put((byte) value);
+        }
+
+        private void putInt(int value) {
+            this.out.put(Protocol.OK).putInt(value);
+        }
+
+        private void putLong(long value) {
+            this.out.put(Protocol.OK).putLong(value);
+        }
+
+        private void write() throws IOException {
+            this.out.flip();
+            this.channel.write(this.out);
+            this.out.compact();
+        }
+
+        void close() {
+            if (!this.key.isValid()) {
+                return;
+            }
+            this.key.cancel();
+            closeQuietly(this.channel);
+            this.loop.buffers.give(this.in);
+            this.loop.buffers.give(this.out);
+        }
+    }
+}
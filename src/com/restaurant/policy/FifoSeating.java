@@ -0,0 +1,21 @@
+package com.restaurant.policy;
+
+import java.util.List;
+
+/**
+ * Default policy: the oldest group which fits is seated first, at the smallest free table if there is one.
+ * <p>Cheapest and fairest, but a big table may go to a small group while a big group waits right behind it.
+ */
+public final class FifoSeating extends SeatingPolicy {
+
+    @Override
+    public int window() {
+        return 0;
+    }
+
+    @Override
+    public List<Placement> plan(int[] sizes, int[] capacity, int mustSeat) {
+        return List.of();
+    }
+
+}
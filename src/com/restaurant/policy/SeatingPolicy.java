@@ -0,0 +1,52 @@
+package com.restaurant.policy;
+
+import java.util.List;
+
+/**
+ * Decides which waiting groups the dispatcher seats, and at which tables, whenever capacity frees up.
+ *
+ * <p>A policy plans over plain numbers only, the dispatcher carries the plan out with the usual seat swaps
+ * and drops the rest of it as soon as a swap fails, so a policy never has to care about concurrency.
+ * <p>The starvation bound is enforced by the dispatcher itself: once a group has been bypassed {@link #maxBypass()} times,
+ * nobody younger is seated before it, whatever the plan says.
+ */
+public abstract class SeatingPolicy {
+
+    /**
+     * @return number of the oldest waiting groups a plan chooses from,
+     * or 0 for the greedy pass of the waiting line, which never calls {@link #plan(int[], int[], int)}
+     */
+    public abstract int window();
+
+    /**
+     * @return dispatcher passes a group may be bypassed by younger ones
+     */
+    public int maxBypass() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return whether a single group (an arrival, or a greedy pass) takes the table with the fewest seats left,
+     * instead of the smallest free table first
+     */
+    public boolean bestFitTables() {
+        return false;
+    }
+
+    /**
+     * @param sizes    sizes of the window, oldest first
+     * @param capacity number of tables per seats left, indexed by seats left, free to be modified
+     * @param mustSeat index of a group which has to be seated if at all possible, or -1;
+     *                 if it cannot be, nobody younger may be seated
+     * @return placements in the order the dispatcher carries them out, each one counted on the capacity left by the previous ones
+     */
+    public abstract List<Placement> plan(int[] sizes, int[] capacity, int mustSeat);
+
+    /**
+     * @param group     index of the group in the window
+     * @param seatsLeft seats left of the table it takes, before taking it
+     */
+    public record Placement(int group, int seatsLeft) {
+    }
+
+}
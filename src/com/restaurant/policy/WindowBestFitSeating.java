@@ -0,0 +1,203 @@
+package com.restaurant.policy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilization-first policy: packs the oldest waiting groups into the free seats, so the fewest seats stay empty.
+ *
+ * <p>Each pass solves a small bin-packing problem over the window: tables are bins by seats left, and the chosen subset
+ * of groups maximizes the seated clients, then prefers the older groups on a tie.
+ * <p>Branch and bound over the groups, biggest first, with the best-fit table tried first, so the first solution found is
+ * the best-fit-decreasing packing and every later one improves on it.
+ * <p>Bounded time: a pass visits at most {@code maxNodes} search nodes of at most {@code MAX_SEATS + 1} branches each,
+ * whatever the length of the line, and the best packing found so far is kept when the budget runs out.
+ * <p>Starvation bound: a group bypassed {@code maxBypass} times is placed before anybody else, and if it does not fit,
+ * only older groups are considered until it does.
+ */
+public final class WindowBestFitSeating extends SeatingPolicy {
+
+    private static final int MAX_WINDOW = 64;
+
+    private final int window;
+    private final int maxBypass;
+    private final int maxNodes;
+
+    /**
+     * @param window    number of the oldest waiting groups considered by a pass
+     * @param maxBypass passes a group may be bypassed by younger ones
+     * @param maxNodes  search budget of a pass, it has to allow for a straight descent through the window
+     */
+    public WindowBestFitSeating(int window, int maxBypass, int maxNodes) {
+        if (window <= 0 || window > MAX_WINDOW) {
+            throw new IllegalArgumentException("Window must be between 1 and " + MAX_WINDOW);
+        }
+        if (maxBypass < 0) {
+            throw new IllegalArgumentException("Max bypass must not be negative");
+        }
+        if (maxNodes <= window) {
+            throw new IllegalArgumentException("Node budget must be bigger than the window");
+        }
+        this.window = window;
+        this.maxBypass = maxBypass;
+        this.maxNodes = maxNodes;
+    }
+
+    public WindowBestFitSeating() {
+        this(16, 32, 1_024);
+    }
+
+    @Override
+    public int window() {
+        return this.window;
+    }
+
+    @Override
+    public int maxBypass() {
+        return this.maxBypass;
+    }
+
+    @Override
+    public boolean bestFitTables() {
+        return true;
+    }
+
+    /**
+     * The group which must be seated goes first, so it is placed by the very first descent if it fits at all.
+     */
+    @Override
+    public List<Placement> plan(int[] sizes, int[] capacity, int mustSeat) {
+        int groups = sizes.length;
+        int forced = -1;
+        if (mustSeat >= 0) {
+            if (fits(sizes[mustSeat], capacity)) {
+                forced = mustSeat;
+            } else {
+                groups = mustSeat;
+            }
+        }
+        return new Search(sizes, capacity, order(sizes, groups, forced), forced, this.maxNodes).run();
+    }
+
+    /**
+     * Biggest groups first and the oldest first among a size, by an insertion sort, the window being small.
+     */
+    private static int[] order(int[] sizes, int groups, int forced) {
+        var order = new int[groups];
+        int sorted = 0;
+        if (forced >= 0) {
+            order[sorted++] = forced;
+        }
+        int start = sorted;
+        for (int i = 0; i < groups; i++) {
+            if (i == forced) {
+                continue;
+            }
+            int k = sorted++;
+            while (k > start && sizes[order[k - 1]] < sizes[i]) {
+                order[k] = order[k - 1];
+                k--;
+            }
+            order[k] = i;
+        }
+        return order;
+    }
+
+    private static boolean fits(int size, int[] capacity) {
+        for (int seats = size; seats < capacity.length; seats++) {
+            if (capacity[seats] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * State of a single plan, touched by the planning thread only.
+     */
+    private static final class Search {
+        private final int[] sizes;
+        private final int[] capacity;
+        private final int[] order;
+        /**
+         * Clients of the groups from each position of the order onward, an upper bound of what is left to seat.
+         */
+        private final int[] remaining;
+        private final int forced;
+        private final int maxNodes;
+        private final int[] chosen;
+        private int[] best;
+        private int bestCovers = -1;
+        private int bestAge;
+        private int nodes;
+
+        private Search(int[] sizes, int[] capacity, int[] order, int forced, int maxNodes) {
+            this.sizes = sizes;
+            this.capacity = capacity;
+            this.order = order;
+            this.forced = forced;
+            this.maxNodes = maxNodes;
+            this.chosen = new int[order.length];
+            this.remaining = new int[order.length + 1];
+            for (int k = order.length - 1; k >= 0; k--) {
+                this.remaining[k] = this.remaining[k + 1] + sizes[order[k]];
+            }
+        }
+
+        private List<Placement> run() {
+            int free = 0;
+            for (int seats = 1; seats < this.capacity.length; seats++) {
+                free += seats * this.capacity[seats];
+            }
+            this.search(0, 0, 0, free);
+            var placements = new ArrayList<Placement>();
+            for (int k = 0; k < this.order.length; k++) {
+                if (this.best[k] > 0) {
+                    placements.add(new Placement(this.order[k], this.best[k]));
+                }
+            }
+            return placements;
+        }
+
+        /**
+         * @param covers clients placed so far
+         * @param age    sum of the window indexes of the placed groups, lower is older
+         * @param free   seats left at all tables
+         */
+        private void search(int k, int covers, int age, int free) {
+            if (k == this.order.length) {
+                if (covers > this.bestCovers || (covers == this.bestCovers && age < this.bestAge)) {
+                    this.best = this.chosen.clone();
+                    this.bestCovers = covers;
+                    this.bestAge = age;
+                }
+                return;
+            }
+            if (this.best != null) { // the first descent always completes, so there is a plan whatever the budget
+                int bound = covers + Math.min(this.remaining[k], free);
+                if (this.nodes++ >= this.maxNodes || bound < this.bestCovers || (bound == this.bestCovers && age >= this.bestAge)) {
+                    return;
+                }
+            }
+            int group = this.order[k];
+            int size = this.sizes[group];
+            // groups of a size come oldest first, so leaving out an older one for a younger one of the same size never pays off
+            boolean olderLeftOut = k > 0 && this.order[k - 1] != this.forced && this.sizes[this.order[k - 1]] == size && this.chosen[k - 1] == 0;
+            for (int seats = size; seats < this.capacity.length && !olderLeftOut; seats++) {
+                if (this.capacity[seats] > 0) {
+                    this.capacity[seats]--;
+                    this.capacity[seats - size]++;
+                    this.chosen[k] = seats;
+                    this.search(k + 1, covers + size, age + group, free - size);
+                    this.capacity[seats]++;
+                    this.capacity[seats - size]--;
+                }
+            }
+            if (group != this.forced) {
+                this.chosen[k] = 0;
+                this.search(k + 1, covers, age, free);
+            }
+        }
+    }
+
+}
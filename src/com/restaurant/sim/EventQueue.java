@@ -0,0 +1,105 @@
+package com.restaurant.sim;
+
+import com.restaurant.ClientsGroup;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of simulation events on parallel primitive arrays, so pushing and popping an event does not allocate.
+ * <p>Events of the same time come out in the order they were pushed.
+ */
+final class EventQueue {
+
+    static final byte ARRIVAL = 0;
+    static final byte DEPARTURE = 1;
+    static final byte ABANDON = 2;
+
+    private long[] times = new long[1024];
+    private long[] sequences = new long[1024];
+    private byte[] kinds = new byte[1024];
+    private ClientsGroup[] groups = new ClientsGroup[1024];
+    private int size;
+    private long sequence;
+
+    // the event taken by the last poll
+    long time;
+    byte kind;
+    ClientsGroup group;
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    void push(long time, byte kind, ClientsGroup group) {
+        if (this.size == this.times.length) {
+            int capacity = this.size * 2;
+            this.times = Arrays.copyOf(this.times, capacity);
+            this.sequences = Arrays.copyOf(this.sequences, capacity);
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.groups = Arrays.copyOf(this.groups, capacity);
+        }
+        int i = this.size++;
+        long seq = this.sequence++;
+        while (i > 0) { // sift up
+            int parent = (i - 1) >>> 1;
+            if (!this.before(time, seq, parent)) {
+                break;
+            }
+            this.move(parent, i);
+            i = parent;
+        }
+        this.set(i, time, seq, kind, group);
+    }
+
+    /**
+     * Takes the earliest event into {@link #time}, {@link #kind} and {@link #group}.
+     */
+    void poll() {
+        this.time = this.times[0];
+        this.kind = this.kinds[0];
+        this.group = this.groups[0];
+        int last = --this.size;
+        long lastTime = this.times[last];
+        long lastSeq = this.sequences[last];
+        byte lastKind = this.kinds[last];
+        var lastGroup = this.groups[last];
+        this.groups[last] = null;
+        int i = 0;
+        while (true) { // sift down
+            int child = 2 * i + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && this.before(this.times[child + 1], this.sequences[child + 1], child)) {
+                child++;
+            }
+            if (!this.before(this.times[child], this.sequences[child], lastTime, lastSeq)) {
+                break;
+            }
+            this.move(child, i);
+            i = child;
+        }
+        if (last > 0) {
+            this.set(i, lastTime, lastSeq, lastKind, lastGroup);
+        }
+    }
+
+    private boolean before(long time, long seq, int index) {
+        return this.before(time, seq, this.times[index], this.sequences[index]);
+    }
+
+    private boolean before(long time, long seq, long otherTime, long otherSeq) {
+        return time < otherTime || time == otherTime && seq < otherSeq;
+    }
+
+    private void move(int from, int to) {
+        this.set(to, this.times[from], this.sequences[from], this.kinds[from], this.groups[from]);
+    }
+
+    private void set(int index, long time, long seq, byte kind, ClientsGroup group) {
+        this.times[index] = time;
+        this.sequences[index] = seq;
+        this.kinds[index] = kind;
+        this.groups[index] = group;
+    }
+}
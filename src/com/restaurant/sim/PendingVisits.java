@@ -0,0 +1,109 @@
+package com.restaurant.sim;
+
+import java.util.Arrays;
+
+/**
+ * Visits of the groups which have not been seated yet, by arrival, in an open-addressing table on parallel primitive arrays
+ * like {@link EventQueue}, so keeping a visit until the seat does not allocate.
+ * <p>Arrivals are unique within a run and never {@link Long#MIN_VALUE}, which marks an empty cell.
+ */
+final class PendingVisits {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] arrivals = emptyCells(1024);
+    private long[] dwells = new long[1024];
+    private long[] patiences = new long[1024];
+    private int size;
+
+    void put(long arrival, Visit visit) {
+        if (2 * (this.size + 1) > this.arrivals.length) {
+            this.grow();
+        }
+        int i = this.cell(arrival);
+        this.arrivals[i] = arrival;
+        this.dwells[i] = visit.dwellNanos();
+        this.patiences[i] = visit.patienceNanos();
+        this.size++;
+    }
+
+    boolean contains(long arrival) {
+        return this.arrivals[this.cell(arrival)] == arrival;
+    }
+
+    /**
+     * @return patience of the visit, which has to be pending
+     */
+    long patience(long arrival) {
+        return this.patiences[this.cell(arrival)];
+    }
+
+    /**
+     * @return dwell of the visit, which has to be pending
+     */
+    long remove(long arrival) {
+        int i = this.cell(arrival);
+        long dwell = this.dwells[i];
+        int mask = this.arrivals.length - 1;
+        int j = i;
+        while (true) { // shifts the rest of the cluster back, so no lookup stops at the hole
+            j = (j + 1) & mask;
+            if (this.arrivals[j] == EMPTY) {
+                break;
+            }
+            int home = hash(this.arrivals[j]) & mask;
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                this.arrivals[i] = this.arrivals[j];
+                this.dwells[i] = this.dwells[j];
+                this.patiences[i] = this.patiences[j];
+                i = j;
+            }
+        }
+        this.arrivals[i] = EMPTY;
+        this.size--;
+        return dwell;
+    }
+
+    /**
+     * @return the cell of the arrival, or the empty one it would take
+     */
+    private int cell(long arrival) {
+        int mask = this.arrivals.length - 1;
+        int i = hash(arrival) & mask;
+        while (this.arrivals[i] != arrival && this.arrivals[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        var arrivals = this.arrivals;
+        var dwells = this.dwells;
+        var patiences = this.patiences;
+        this.arrivals = emptyCells(arrivals.length * 2);
+        this.dwells = new long[arrivals.length * 2];
+        this.patiences = new long[arrivals.length * 2];
+        for (int i = 0; i < arrivals.length; i++) {
+            if (arrivals[i] != EMPTY) {
+                int cell = this.cell(arrivals[i]);
+                this.arrivals[cell] = arrivals[i];
+                this.dwells[cell] = dwells[i];
+                this.patiences[cell] = patiences[i];
+            }
+        }
+    }
+
+    private static long[] emptyCells(int length) {
+        var cells = new long[length];
+        Arrays.fill(cells, EMPTY);
+        return cells;
+    }
+
+    /**
+     * Arrivals may be spaced evenly, so their bits are mixed before they pick a cell.
+     */
+    private static int hash(long arrival) {
+        long h = arrival * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,211 @@
+package com.restaurant.sim;
+
+import com.restaurant.ClientsGroup;
+import com.restaurant.RestManager;
+import com.restaurant.RestSettings;
+import com.restaurant.RestUtil;
+import com.restaurant.Table;
+import com.restaurant.clock.VirtualClock;
+import com.restaurant.policy.FifoSeating;
+import com.restaurant.policy.SeatingPolicy;
+import com.restaurant.policy.WindowBestFitSeating;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded discrete-event simulation of a table layout, for capacity planning.
+ *
+ * <p>The real seating engine is driven through the {@link com.restaurant.Manager} interface on a {@link VirtualClock}:
+ * there is no dispatcher thread, a dispatcher pass runs right after each departure, and the seat callback schedules the departure.
+ * So a run is deterministic and goes as fast as the events can be processed.
+ * <p>Only one arrival is pulled from the workload ahead, so a workload of any length can be replayed.
+ */
+public final class Simulation {
+
+    private final List<Table> layout;
+    private final SeatingPolicy seatingPolicy;
+
+    public Simulation(List<Table> layout, SeatingPolicy seatingPolicy) {
+        this.layout = List.copyOf(layout);
+        this.seatingPolicy = seatingPolicy;
+    }
+
+    public Simulation(List<Table> layout) {
+        this(layout, new FifoSeating());
+    }
+
+    public SimulationReport run(Iterator<Visit> workload) {
+        return new Run(workload).run();
+    }
+
+    /**
+     * Runs every layout against the same workload and prints the reports.
+     * <p>Usage: {@code Simulation [--trace=<csv>] [--peak=<arrivals per hour>] [--seed=<n>] [--policy=fifo|window] <layout>...}
+     * where a layout looks like {@code 2x10,4x8,6x2} (ten tables of 2, eight tables of 4, two tables of 6).
+     */
+    public static void main(String[] args) throws IOException {
+        Path trace = null;
+        double peak = 60;
+        long seed = 1;
+        SeatingPolicy seatingPolicy = new FifoSeating();
+        var layouts = new ArrayList<String>();
+        for (var arg : args) {
+            if (arg.startsWith("--trace=")) {
+                trace = Path.of(arg.substring("--trace=".length()));
+            } else if (arg.startsWith("--peak=")) {
+                peak = Double.parseDouble(arg.substring("--peak=".length()));
+            } else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(arg.substring("--seed=".length()));
+            } else if (arg.equals("--policy=window")) {
+                seatingPolicy = new WindowBestFitSeating();
+            } else if (arg.equals("--policy=fifo")) {
+                seatingPolicy = new FifoSeating();
+            } else {
+                layouts.add(arg);
+            }
+        }
+        for (var layout : layouts) {
+            var simulation = new Simulation(RestUtil.parseLayout(layout), seatingPolicy);
+            SimulationReport report;
+            if (trace != null) {
+                try (var workload = new TraceWorkload(trace)) {
+                    report = simulation.run(workload);
+                }
+            } else {
+                report = simulation.run(SyntheticWorkload.lunchAndDinner(peak, seed));
+            }
+            System.out.println(layout + ": " + report);
+        }
+    }
+
+    /**
+     * State of one run, touched by the simulating thread only.
+     */
+    private final class Run {
+        private final Iterator<Visit> workload;
+        private final VirtualClock clock = new VirtualClock(LocalDateTime.of(2000, 1, 1, 0, 0));
+        private final EventQueue events = new EventQueue();
+        private final PendingVisits notSeated = new PendingVisits();
+        private final RestManager manager;
+        private long[] waits = new long[1024];
+        private long lastArrival = -1;
+        private long lastEvent;
+        private long arrived, seated, abandoned, eventCount;
+        private int waiting, maxQueue, occupiedSeats;
+        private double seatArea, queueArea;
+
+        private Run(Iterator<Visit> workload) {
+            this.workload = workload;
+            this.manager = new RestManager(Simulation.this.layout, true, null, RestSettings.defaults()
+                    .withClock(this.clock)
+                    .withPackedSeats(true)
+                    .withManualDispatch(true)
+                    .withSeatingPolicy(Simulation.this.seatingPolicy)
+                    .withOnSeat(this::seated));
+        }
+
+        private SimulationReport run() {
+            long start = System.nanoTime();
+            this.pullArrival();
+            long first = this.events.isEmpty() ? 0 : this.lastArrival;
+            this.lastEvent = first;
+            while (!this.events.isEmpty()) {
+                this.events.poll();
+                this.eventCount++;
+                this.advance(this.events.time);
+                var group = this.events.group;
+                switch (this.events.kind) {
+                    case EventQueue.ARRIVAL -> this.arrive(group);
+                    case EventQueue.DEPARTURE -> {
+                        this.manager.onLeave(group);
+                        this.occupiedSeats -= group.size();
+                        this.manager.dispatch();
+                    }
+                    case EventQueue.ABANDON -> {
+                        if (this.notSeated.contains(group.arrivalNanos()) && this.manager.abandonQueue(group)) {
+                            this.notSeated.remove(group.arrivalNanos());
+                            this.waiting--;
+                            this.abandoned++;
+                        }
+                    }
+                    default -> throw new IllegalStateException();
+                }
+                this.maxQueue = Math.max(this.maxQueue, this.waiting);
+            }
+            long elapsed = System.nanoTime() - start;
+            this.manager.close();
+            long simulated = this.lastEvent - first;
+            int seats = Simulation.this.layout.stream().mapToInt(Table::size).sum();
+            var sorted = Arrays.copyOf(this.waits, (int) this.seated);
+            Arrays.sort(sorted);
+            return new SimulationReport(seats, this.arrived, this.seated, this.abandoned, this.waiting,
+                    Duration.ofNanos(simulated),
+                    simulated == 0 ? 0 : this.seatArea / ((double) seats * simulated),
+                    simulated == 0 ? 0 : this.queueArea / simulated,
+                    this.maxQueue,
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0),
+                    this.eventCount,
+                    this.eventCount / (elapsed / (double) TimeUnit.SECONDS.toNanos(1)));
+        }
+
+        /**
+         * Arrival times are made unique, since groups of the same size and arrival are equal for the manager.
+         */
+        private void pullArrival() {
+            if (this.workload.hasNext()) {
+                var visit = this.workload.next();
+                this.lastArrival = Math.max(visit.arrivalNanos(), this.lastArrival + 1);
+                var group = new ClientsGroup(visit.size(), this.lastArrival);
+                this.notSeated.put(this.lastArrival, visit);
+                this.events.push(this.lastArrival, EventQueue.ARRIVAL, group);
+            }
+        }
+
+        private void arrive(ClientsGroup group) {
+            this.arrived++;
+            this.waiting++; // undone by the seat callback if it is seated right away
+            long patience = this.notSeated.patience(group.arrivalNanos());
+            if (patience != Visit.UNLIMITED_PATIENCE) {
+                this.events.push(group.arrivalNanos() + patience, EventQueue.ABANDON, group);
+            }
+            this.manager.onArrive(group);
+            this.pullArrival();
+        }
+
+        private void seated(ClientsGroup group) {
+            long dwell = this.notSeated.remove(group.arrivalNanos());
+            long now = this.clock.nanos();
+            this.waiting--;
+            this.occupiedSeats += group.size();
+            if (this.seated == this.waits.length) {
+                this.waits = Arrays.copyOf(this.waits, this.waits.length * 2);
+            }
+            this.waits[(int) this.seated++] = now - group.arrivalNanos();
+            this.events.push(now + dwell, EventQueue.DEPARTURE, group);
+        }
+
+        private void advance(long time) {
+            long elapsed = time - this.lastEvent;
+            this.seatArea += (double) this.occupiedSeats * elapsed;
+            this.queueArea += (double) this.waiting * elapsed;
+            this.lastEvent = time;
+            this.clock.setNanos(time);
+        }
+
+        private static Duration percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return Duration.ZERO;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length) - 1;
+            return Duration.ofNanos(sorted[Math.max(0, rank)]);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.restaurant.sim;
+
+import java.time.Duration;
+
+/**
+ * Outcome of a {@link Simulation} run.
+ *
+ * @param utilization  time-weighted share of occupied seats over the simulated time
+ * @param averageQueue time-weighted mean number of waiting groups
+ * @param waitP50      wait-time percentiles of the seated groups, abandoning groups are counted apart
+ * @param stillWaiting groups waiting when the events ran out, they would never fit any table
+ */
+public record SimulationReport(int seats, long arrived, long seated, long abandoned, long stillWaiting,
+                               Duration simulatedTime, double utilization, double averageQueue, int maxQueue,
+                               Duration waitP50, Duration waitP90, Duration waitP99, Duration waitMax,
+                               long events, double eventsPerSecond) {
+
+    @Override
+    public String toString() {
+        return String.format("seats=%d arrived=%d seated=%d abandoned=%d stillWaiting=%d simulated=%s utilization=%.1f%% "
+                        + "queue(avg=%.2f max=%d) wait(p50=%s p90=%s p99=%s max=%s) events=%d (%.0f/s)",
+                this.seats, this.arrived, this.seated, this.abandoned, this.stillWaiting, this.simulatedTime, this.utilization * 100,
+                this.averageQueue, this.maxQueue, this.waitP50, this.waitP90, this.waitP99, this.waitMax,
+                this.events, this.eventsPerSecond);
+    }
+}
@@ -0,0 +1,105 @@
+package com.restaurant.sim;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Randomly generated day of visits, reproducible by its seed.
+ *
+ * <p>Arrivals are a Poisson process whose rate changes hourly, dwell times are Erlang-2 distributed around their mean
+ * (rarely very short, with a long tail), and patience is exponential.
+ */
+public final class SyntheticWorkload implements Iterator<Visit> {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    private final double[] arrivalsPerHour;
+    private final double[] sizeCumulative;
+    private final double meanDwellNanos;
+    private final double meanPatienceNanos;
+    private final SplittableRandom random;
+    private Visit next;
+    private long now;
+
+    /**
+     * @param arrivalsPerHour arrival rate of each hour from the opening, the day lasts as many hours
+     * @param sizeWeights     relative frequency of groups of 1, 2, ... clients
+     * @param meanPatience    mean time a group is ready to wait, null if groups never give up
+     */
+    public SyntheticWorkload(double[] arrivalsPerHour, double[] sizeWeights, Duration meanDwell, Duration meanPatience, long seed) {
+        this.arrivalsPerHour = arrivalsPerHour.clone();
+        this.sizeCumulative = new double[sizeWeights.length];
+        Arrays.setAll(this.sizeCumulative, i -> Arrays.stream(sizeWeights, 0, i + 1).sum() / Arrays.stream(sizeWeights).sum());
+        this.meanDwellNanos = meanDwell.toNanos();
+        this.meanPatienceNanos = meanPatience == null ? Double.NaN : meanPatience.toNanos();
+        this.random = new SplittableRandom(seed);
+        this.next = this.generate();
+    }
+
+    /**
+     * A 12 hour day with a lunch and a dinner peak of {@code peakArrivalsPerHour}, mostly couples, 75 minutes at the table
+     * and 30 minutes of patience on average.
+     */
+    public static SyntheticWorkload lunchAndDinner(double peakArrivalsPerHour, long seed) {
+        double[] profile = {0.2, 0.6, 1.0, 0.7, 0.2, 0.1, 0.2, 0.5, 1.0, 0.9, 0.5, 0.2};
+        return new SyntheticWorkload(
+                Arrays.stream(profile).map(share -> share * peakArrivalsPerHour).toArray(),
+                new double[]{0.15, 0.40, 0.15, 0.20, 0.05, 0.05},
+                Duration.ofMinutes(75),
+                Duration.ofMinutes(30),
+                seed);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.next != null;
+    }
+
+    @Override
+    public Visit next() {
+        if (this.next == null) {
+            throw new NoSuchElementException();
+        }
+        var visit = this.next;
+        this.next = this.generate();
+        return visit;
+    }
+
+    private Visit generate() {
+        while (true) {
+            int hour = (int) (this.now / HOUR);
+            if (hour >= this.arrivalsPerHour.length) {
+                return null;
+            }
+            double ratePerNano = this.arrivalsPerHour[hour] / HOUR;
+            long hourEnd = (hour + 1) * HOUR;
+            long arrival = ratePerNano > 0 ? this.now + (long) this.exponential(1 / ratePerNano) : hourEnd;
+            if (arrival >= hourEnd) {
+                this.now = hourEnd; // memoryless, so the next hour simply starts over with its own rate
+                continue;
+            }
+            this.now = arrival;
+            long dwell = (long) (this.exponential(this.meanDwellNanos / 2) + this.exponential(this.meanDwellNanos / 2));
+            long patience = Double.isNaN(this.meanPatienceNanos) ? Visit.UNLIMITED_PATIENCE : (long) this.exponential(this.meanPatienceNanos);
+            return new Visit(arrival, this.size(), Math.max(1, dwell), patience);
+        }
+    }
+
+    private int size() {
+        double u = this.random.nextDouble();
+        for (int i = 0; i < this.sizeCumulative.length - 1; i++) {
+            if (u < this.sizeCumulative[i]) {
+                return i + 1;
+            }
+        }
+        return this.sizeCumulative.length;
+    }
+
+    private double exponential(double mean) {
+        return -mean * Math.log(1 - this.random.nextDouble());
+    }
+}
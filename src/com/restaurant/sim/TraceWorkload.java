@@ -0,0 +1,81 @@
+package com.restaurant.sim;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Visits replayed from a CSV trace, read lazily so a trace of any length fits in memory.
+ *
+ * <p>One visit per line: {@code arrivalSeconds,size,dwellSeconds[,patienceSeconds]}, seconds may be fractional.
+ * Lines have to be ordered by arrival, empty lines and lines starting with {@code #} are skipped.
+ */
+public final class TraceWorkload implements Iterator<Visit>, Closeable {
+
+    private final BufferedReader reader;
+    private Visit next;
+    private int lineNumber;
+
+    public TraceWorkload(Path trace) throws IOException {
+        this.reader = Files.newBufferedReader(trace);
+        this.next = this.read();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.next != null;
+    }
+
+    @Override
+    public Visit next() {
+        if (this.next == null) {
+            throw new NoSuchElementException();
+        }
+        var visit = this.next;
+        this.next = this.read();
+        return visit;
+    }
+
+    private Visit read() {
+        try {
+            String line;
+            while ((line = this.reader.readLine()) != null) {
+                this.lineNumber++;
+                line = line.strip();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    return this.parse(line);
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Visit parse(String line) {
+        var fields = line.split(",");
+        if (fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException("Invalid trace line " + this.lineNumber + ": " + line);
+        }
+        return new Visit(
+                nanos(fields[0]),
+                Integer.parseInt(fields[1].strip()),
+                nanos(fields[2]),
+                fields.length == 4 ? nanos(fields[3]) : Visit.UNLIMITED_PATIENCE);
+    }
+
+    private static long nanos(String seconds) {
+        return (long) (Double.parseDouble(seconds.strip()) * TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,12 @@
+package com.restaurant.sim;
+
+/**
+ * One group coming to the restaurant, times are nanoseconds of the virtual clock.
+ *
+ * @param patienceNanos how long the group is ready to wait for a table, {@link Long#MAX_VALUE} if it never gives up
+ */
+public record Visit(long arrivalNanos, int size, long dwellNanos, long patienceNanos) {
+
+    public static final long UNLIMITED_PATIENCE = Long.MAX_VALUE;
+
+}
@@ -1,7 +1,27 @@
 package com.restaurant.wait;
 
+/**
+ * What a dispatcher does while it has nothing to seat.
+ * <p>A strategy may keep the state of its waiting thread, so every dispatcher needs an instance of its own:
+ * one per {@link com.restaurant.RestManager}, and one per shard of a {@link com.restaurant.ShardedRestManager}.
+ */
 public abstract class ActionOnWait {
 
     abstract public void doOnWait();
 
+    /**
+     * Called by producers whenever there may be new work for the waiting thread.
+     * <p>Busy strategies re-check on their own, so they have nothing to do here.
+     */
+    public void onSignal() {
+        // Do nothing
+    }
+
+    /**
+     * Called by the waiting thread once it has done some work again.
+     */
+    public void onProgress() {
+        // Do nothing
+    }
+
 }
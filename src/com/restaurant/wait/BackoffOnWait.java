@@ -0,0 +1,55 @@
+package com.restaurant.wait;
+
+/**
+ * Adaptive strategy: spins first, then yields, and parks once the waiting has lasted long enough.
+ * <p>Short gaps between events are bridged without the wake-up latency of parking, while a long idle period costs no CPU.
+ * <p>The idle counter is touched by the waiting thread only, so it needs no synchronization.
+ * Like {@link ParkOnWait}, an instance serves a single waiting thread, which its parking stage enforces.
+ */
+public final class BackoffOnWait extends ActionOnWait {
+
+    private final int spins;
+    private final int yields;
+    private final ParkOnWait parkOnWait = new ParkOnWait();
+    private int idleWaits;
+
+    /**
+     * @param spins  consecutive idle waits handled with {@link Thread#onSpinWait()}
+     * @param yields consecutive idle waits handled with {@link Thread#yield()} after spinning, parking comes afterwards
+     */
+    public BackoffOnWait(int spins, int yields) {
+        if (spins < 0 || yields < 0) {
+            throw new IllegalArgumentException("Thresholds must not be negative");
+        }
+        this.spins = spins;
+        this.yields = yields;
+    }
+
+    public BackoffOnWait() {
+        this(1_000, 100);
+    }
+
+    @Override
+    public void doOnWait() {
+        if (this.idleWaits < this.spins) {
+            this.idleWaits++;
+            Thread.onSpinWait();
+        } else if (this.idleWaits - this.spins < this.yields) {
+            this.idleWaits++;
+            Thread.yield();
+        } else {
+            this.parkOnWait.doOnWait();
+        }
+    }
+
+    @Override
+    public void onSignal() {
+        this.parkOnWait.onSignal();
+    }
+
+    @Override
+    public void onProgress() {
+        this.idleWaits = 0;
+    }
+
+}
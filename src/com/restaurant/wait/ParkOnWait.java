@@ -0,0 +1,39 @@
+package com.restaurant.wait;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Event-driven strategy: the waiting thread parks until a producer signals it.
+ * <p>The {@code signalled} flag is consumed before parking, so a signal sent while the waiting thread is still busy is never lost.
+ * Only the first signal after a consumed one pays for an unpark.
+ * <p>The flag wakes a single thread, so an instance serves the first thread which waits on it and refuses any other.
+ */
+public final class ParkOnWait extends ActionOnWait {
+
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private final AtomicReference<Thread> waiter = new AtomicReference<>();
+
+    /**
+     * @throws IllegalStateException if another thread waits on this instance, e.g. one strategy given to two restaurants
+     */
+    @Override
+    public void doOnWait() {
+        var current = Thread.currentThread();
+        if (this.waiter.get() != current && !this.waiter.compareAndSet(null, current)) {
+            throw new IllegalStateException("Wait strategy already serves " + this.waiter.get().getName());
+        }
+        if (!this.signalled.getAndSet(false)) {
+            LockSupport.park(this);
+        }
+    }
+
+    @Override
+    public void onSignal() {
+        if (!this.signalled.getAndSet(true)) {
+            LockSupport.unpark(this.waiter.get()); // without a waiter yet, the flag alone keeps the signal for its first wait
+        }
+    }
+
+}